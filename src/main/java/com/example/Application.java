@@ -1,25 +1,32 @@
 package com.example;
 
+import com.example.security.PasswordHasher;
+import com.example.services.AdminStatsService;
 import com.example.services.DatabaseConnectionService;
+import com.example.services.SchemaService;
 import com.vaadin.flow.component.dependency.StyleSheet;
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 import com.vaadin.flow.theme.lumo.Lumo;
-import org.mindrot.jbcrypt.BCrypt;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement; // Ważny import!
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 @StyleSheet(Lumo.STYLESHEET)
 @StyleSheet(Lumo.UTILITY_STYLESHEET)
 @StyleSheet("styles.css")
 @PWA(name = "Przychodnia", shortName = "App", offlinePath="offline.html")
+@Push
 public class Application implements AppShellConfigurator, CommandLineRunner {
 
     public static void main(String[] args) {
@@ -28,63 +35,93 @@ public class Application implements AppShellConfigurator, CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        SchemaService schemaService = new SchemaService();
+        try {
+            int applied = schemaService.migrate();
+            System.out.println(">>> [START] Schemat bazy aktualny (nowych migracji: " + applied + ").");
+        } catch (Exception e) {
+            System.err.println("!!! [START] Migracja schematu nie powiodła się: " + e.getMessage());
+        }
+        try {
+            if (schemaService.verifyIndexes().isEmpty()) {
+                System.out.println(">>> [START] Wszystkie oczekiwane indeksy są na miejscu.");
+            }
+        } catch (Exception e) {
+            System.err.println("!!! [START] Nie udało się sprawdzić indeksów: " + e.getMessage());
+        }
+
+        if (Arrays.asList(args).contains("--rebuild-stats-rollup")) {
+            try {
+                int rows = new AdminStatsService().rebuildRollup();
+                System.out.println(">>> [START] Przebudowano podsumowanie statystyk (wierszy: " + rows + ").");
+            } catch (Exception e) {
+                System.err.println("!!! [START] Przebudowa podsumowania statystyk nie powiodła się: " + e.getMessage());
+            }
+        }
+
         System.out.println(">>> [START] Sprawdzanie oebecności Administratora...");
 
-        try (Connection conn = DatabaseConnectionService.getConnection()) {
-            String checkSql = "SELECT COUNT(*) FROM Uzytkownik WHERE Login = ?";
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setString(1, "admin");
-                ResultSet rs = checkStmt.executeQuery();
-                if (rs.next() && rs.getInt(1) > 0) {
-                    System.out.println(">>> [START] Administrator już istnieje. Pomijanie.");
-                    return;
+        try {
+            try (Connection conn = DatabaseConnectionService.getConnection()) {
+                String checkSql = "SELECT COUNT(*) FROM Uzytkownik WHERE Login = ?";
+                try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+                    checkStmt.setString(1, "admin");
+                    ResultSet rs = checkStmt.executeQuery();
+                    if (rs.next() && rs.getInt(1) > 0) {
+                        System.out.println(">>> [START] Administrator już istnieje. Pomijanie.");
+                        return;
+                    }
                 }
             }
 
             System.out.println(">>> [START] Brak Administratora. Tworzenie konta...");
-            conn.setAutoCommit(false);
+            // Hash liczony bez trzymania połączenia
+            String hashedPassword = PasswordHasher.hash("admin");
 
-            try {
-                String hashedPassword = BCrypt.hashpw("admin", BCrypt.gensalt());
-                long generatedId = -1;
-
-                String sqlUser = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Numer_telefonu, Email, Rola, Czy_aktywny) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, 'Admin', TRUE)";
-
-                try (PreparedStatement stmtUser = conn.prepareStatement(sqlUser, Statement.RETURN_GENERATED_KEYS)) {
-                    stmtUser.setString(1, "admin");
-                    stmtUser.setString(2, "admin");
-                    stmtUser.setString(3, "admin");
-                    stmtUser.setString(4, hashedPassword);
-                    stmtUser.setString(5, "000000000");
-                    stmtUser.setString(6, "admin@admin.pl");
-
-                    int affectedRows = stmtUser.executeUpdate();
-                    if (affectedRows == 0) throw new Exception("Nie udało się utworzyć użytkownika.");
-
-                    // Pobranie wygenerowanego ID
-                    try (ResultSet generatedKeys = stmtUser.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            generatedId = generatedKeys.getLong(1);
-                        } else {
-                            throw new Exception("Nie udało się pobrać ID nowego użytkownika.");
+            try (Connection conn = DatabaseConnectionService.getConnection()) {
+                conn.setAutoCommit(false);
+
+                try {
+                    long generatedId = -1;
+
+                    String sqlUser = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Numer_telefonu, Email, Rola, Czy_aktywny) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, 'Admin', TRUE)";
+
+                    try (PreparedStatement stmtUser = conn.prepareStatement(sqlUser, Statement.RETURN_GENERATED_KEYS)) {
+                        stmtUser.setString(1, "admin");
+                        stmtUser.setString(2, "admin");
+                        stmtUser.setString(3, "admin");
+                        stmtUser.setString(4, hashedPassword);
+                        stmtUser.setString(5, "000000000");
+                        stmtUser.setString(6, "admin@admin.pl");
+
+                        int affectedRows = stmtUser.executeUpdate();
+                        if (affectedRows == 0) throw new Exception("Nie udało się utworzyć użytkownika.");
+
+                        // Pobranie wygenerowanego ID
+                        try (ResultSet generatedKeys = stmtUser.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                generatedId = generatedKeys.getLong(1);
+                            } else {
+                                throw new Exception("Nie udało się pobrać ID nowego użytkownika.");
+                            }
                         }
                     }
-                }
-                String sqlAdmin = "INSERT INTO Administrator (ID_Uzytkownika) VALUES (?)";
+                    String sqlAdmin = "INSERT INTO Administrator (ID_Uzytkownika) VALUES (?)";
 
-                try (PreparedStatement stmtAdmin = conn.prepareStatement(sqlAdmin)) {
-                    stmtAdmin.setLong(1, generatedId);
-                    stmtAdmin.executeUpdate();
-                }
-                conn.commit();
-                System.out.println(">>> [START] SUKCES! Utworzono admina (ID: " + generatedId + ")");
+                    try (PreparedStatement stmtAdmin = conn.prepareStatement(sqlAdmin)) {
+                        stmtAdmin.setLong(1, generatedId);
+                        stmtAdmin.executeUpdate();
+                    }
+                    conn.commit();
+                    System.out.println(">>> [START] SUKCES! Utworzono admina (ID: " + generatedId + ")");
 
-            } catch (Exception e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
+                } catch (Exception e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
             }
 
         } catch (Exception e) {
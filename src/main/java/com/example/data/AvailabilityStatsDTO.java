@@ -0,0 +1,33 @@
+package com.example.data;
+
+public class AvailabilityStatsDTO {
+    private int doctors;
+    private int days;
+    private long indexLookups;
+    private long databaseLookups;
+    private long drift;
+    private double lastReconcileMillis;
+
+    public AvailabilityStatsDTO(int doctors, int days, long indexLookups, long databaseLookups,
+                                long drift, double lastReconcileMillis) {
+        this.doctors = doctors;
+        this.days = days;
+        this.indexLookups = indexLookups;
+        this.databaseLookups = databaseLookups;
+        this.drift = drift;
+        this.lastReconcileMillis = lastReconcileMillis;
+    }
+
+    public int getDoctors() { return doctors; }
+    public int getDays() { return days; }
+    public long getIndexLookups() { return indexLookups; }
+    public long getDatabaseLookups() { return databaseLookups; }
+    public long getDrift() { return drift; }
+    public double getLastReconcileMillis() { return lastReconcileMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("doctors=%d days=%d lookups[index=%d db=%d] drift=%d reconcile=%.1fms",
+                doctors, days, indexLookups, databaseLookups, drift, lastReconcileMillis);
+    }
+}
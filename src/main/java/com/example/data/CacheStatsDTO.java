@@ -0,0 +1,25 @@
+package com.example.data;
+
+public class CacheStatsDTO {
+    private String region;
+    private long hits;
+    private long misses;
+    private int entries;
+
+    public CacheStatsDTO(String region, long hits, long misses, int entries) {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = entries;
+    }
+
+    public String getRegion() { return region; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public int getEntries() { return entries; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: hits=%d misses=%d entries=%d", region, hits, misses, entries);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.data;
+
+import java.time.LocalDate;
+
+/**
+ * Liczniki rezerwacji jednego dnia (opcjonalnie dla jednego lekarza lub specjalizacji).
+ * Zarezerwowane = wszystkie poza anulowanymi; odbyte, nieodbyte i oczekujące są ich podzbiorami.
+ */
+public class DailyStatsDTO {
+    private LocalDate data;
+    private int grupaId;
+    private String grupa;
+    private int booked;
+    private int cancelled;
+    private int completed;
+    private int noShow;
+    private int pending;
+
+    public DailyStatsDTO(LocalDate data, int grupaId, String grupa,
+                         int booked, int cancelled, int completed, int noShow, int pending) {
+        this.data = data;
+        this.grupaId = grupaId;
+        this.grupa = grupa;
+        this.booked = booked;
+        this.cancelled = cancelled;
+        this.completed = completed;
+        this.noShow = noShow;
+        this.pending = pending;
+    }
+
+    public static DailyStatsDTO empty(LocalDate data) {
+        return new DailyStatsDTO(data, 0, null, 0, 0, 0, 0, 0);
+    }
+
+    public LocalDate getData() { return data; }
+    /** ID lekarza lub specjalizacji; 0 bez podziału (i dla lekarzy bez specjalizacji). */
+    public int getGrupaId() { return grupaId; }
+    public String getGrupa() { return grupa; }
+    public int getBooked() { return booked; }
+    public int getCancelled() { return cancelled; }
+    public int getCompleted() { return completed; }
+    public int getNoShow() { return noShow; }
+    public int getPending() { return pending; }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s: booked=%d cancelled=%d completed=%d noShow=%d pending=%d",
+                data, grupa != null ? " [" + grupa + "]" : "", booked, cancelled, completed, noShow, pending);
+    }
+}
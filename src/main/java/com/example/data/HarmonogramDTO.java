@@ -30,6 +30,7 @@ public class HarmonogramDTO {
     public String getStatus() { return status; }
     public LocalDate getData() { return data; }
     public LocalTime getGodzina() { return godzina; }
+    public int getIdLekarza() { return idLekarza; }
     public String getLekarz() { return lekarz; }
     public int getIdRezerwacji() { return idRezerwacji; }
     public int getIdPacjenta() { return idPacjenta; }
@@ -46,6 +47,7 @@ public class HarmonogramDTO {
     public void setStatus(String status) { this.status = status; }
     public void setData(LocalDate data) { this.data = data; }
     public void setGodzina(LocalTime godzina) { this.godzina = godzina; }
+    public void setIdLekarza(int idLekarza) { this.idLekarza = idLekarza; }
     public void setLekarz(String lekarz) { this.lekarz = lekarz; }
     public void setIdRezerwacji(int idRezerwacji) { this.idRezerwacji = idRezerwacji; }
     public void setIdPacjenta(int idPacjenta) { this.idPacjenta = idPacjenta; }
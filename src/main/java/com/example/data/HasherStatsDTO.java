@@ -0,0 +1,51 @@
+package com.example.data;
+
+public class HasherStatsDTO {
+    private int active;
+    private int threads;
+    private int queued;
+    private int queueCapacity;
+    private long completed;
+    private long rejected;
+    private long timeouts;
+    private double queueWaitP50Millis;
+    private double queueWaitP99Millis;
+    private double hashP50Millis;
+    private double hashP99Millis;
+
+    public HasherStatsDTO(int active, int threads, int queued, int queueCapacity,
+                          long completed, long rejected, long timeouts,
+                          double queueWaitP50Millis, double queueWaitP99Millis,
+                          double hashP50Millis, double hashP99Millis) {
+        this.active = active;
+        this.threads = threads;
+        this.queued = queued;
+        this.queueCapacity = queueCapacity;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.timeouts = timeouts;
+        this.queueWaitP50Millis = queueWaitP50Millis;
+        this.queueWaitP99Millis = queueWaitP99Millis;
+        this.hashP50Millis = hashP50Millis;
+        this.hashP99Millis = hashP99Millis;
+    }
+
+    public int getActive() { return active; }
+    public int getThreads() { return threads; }
+    public int getQueued() { return queued; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getCompleted() { return completed; }
+    public long getRejected() { return rejected; }
+    public long getTimeouts() { return timeouts; }
+    public double getQueueWaitP50Millis() { return queueWaitP50Millis; }
+    public double getQueueWaitP99Millis() { return queueWaitP99Millis; }
+    public double getHashP50Millis() { return hashP50Millis; }
+    public double getHashP99Millis() { return hashP99Millis; }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d/%d queued=%d/%d done=%d rejected=%d timeouts=%d wait[p50=%.2fms p99=%.2fms] hash[p50=%.2fms p99=%.2fms]",
+                active, threads, queued, queueCapacity, completed, rejected, timeouts,
+                queueWaitP50Millis, queueWaitP99Millis, hashP50Millis, hashP99Millis);
+    }
+}
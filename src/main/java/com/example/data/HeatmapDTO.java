@@ -0,0 +1,68 @@
+package com.example.data;
+
+import java.time.LocalDate;
+
+/**
+ * Popyt w siatce tydzień × kwadrans: dzień 0-6 (pon.-niedz.), kwadrans 0-95 od północy.
+ * Oferowane - terminy w grafiku, zajęte - z aktywną rezerwacją, anulowane - anulowane rezerwacje.
+ */
+public class HeatmapDTO {
+    public static final int DAYS = 7;
+    public static final int QUARTERS = 96;
+
+    private LocalDate od;
+    private LocalDate doDnia;
+    private int specjalizacjaId;
+    private int[][] offered;
+    private int[][] booked;
+    private int[][] cancelled;
+
+    public HeatmapDTO(LocalDate od, LocalDate doDnia, int specjalizacjaId,
+                      int[][] offered, int[][] booked, int[][] cancelled) {
+        this.od = od;
+        this.doDnia = doDnia;
+        this.specjalizacjaId = specjalizacjaId;
+        this.offered = offered;
+        this.booked = booked;
+        this.cancelled = cancelled;
+    }
+
+    public LocalDate getOd() { return od; }
+    public LocalDate getDoDnia() { return doDnia; }
+    /** 0 = wszystkie specjalizacje. */
+    public int getSpecjalizacjaId() { return specjalizacjaId; }
+    public int getOffered(int day, int quarter) { return offered[day][quarter]; }
+    public int getBooked(int day, int quarter) { return booked[day][quarter]; }
+    public int getCancelled(int day, int quarter) { return cancelled[day][quarter]; }
+
+    /** Udział zajętych wśród oferowanych; -1, gdy w tym kwadransie nic nie oferowano. */
+    public double getBookingRatio(int day, int quarter) {
+        int slots = offered[day][quarter];
+        return slots == 0 ? -1 : Math.min(1.0, (double) booked[day][quarter] / slots);
+    }
+
+    public double getFreeRatio(int day, int quarter) {
+        double booking = getBookingRatio(day, quarter);
+        return booking < 0 ? -1 : 1.0 - booking;
+    }
+
+    /** Udział anulowanych wśród wszystkich rezerwacji kwadransu; -1 bez rezerwacji. */
+    public double getCancellationRatio(int day, int quarter) {
+        int reservations = booked[day][quarter] + cancelled[day][quarter];
+        return reservations == 0 ? -1 : (double) cancelled[day][quarter] / reservations;
+    }
+
+    @Override
+    public String toString() {
+        int slots = 0, taken = 0, cancellations = 0;
+        for (int d = 0; d < DAYS; d++) {
+            for (int q = 0; q < QUARTERS; q++) {
+                slots += offered[d][q];
+                taken += booked[d][q];
+                cancellations += cancelled[d][q];
+            }
+        }
+        return String.format("%s..%s spec=%d: offered=%d booked=%d cancelled=%d",
+                od, doDnia, specjalizacjaId, slots, taken, cancellations);
+    }
+}
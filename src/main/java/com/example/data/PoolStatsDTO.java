@@ -0,0 +1,51 @@
+package com.example.data;
+
+public class PoolStatsDTO {
+    private int active;
+    private int idle;
+    private int total;
+    private int waiting;
+    private int maxSize;
+    private long acquireCount;
+    private long acquireTimeouts;
+    private double acquireP50Millis;
+    private double acquireP95Millis;
+    private double acquireP99Millis;
+    private double acquireMaxMillis;
+
+    public PoolStatsDTO(int active, int idle, int total, int waiting, int maxSize,
+                        long acquireCount, long acquireTimeouts,
+                        double acquireP50Millis, double acquireP95Millis,
+                        double acquireP99Millis, double acquireMaxMillis) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiting = waiting;
+        this.maxSize = maxSize;
+        this.acquireCount = acquireCount;
+        this.acquireTimeouts = acquireTimeouts;
+        this.acquireP50Millis = acquireP50Millis;
+        this.acquireP95Millis = acquireP95Millis;
+        this.acquireP99Millis = acquireP99Millis;
+        this.acquireMaxMillis = acquireMaxMillis;
+    }
+
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getTotal() { return total; }
+    public int getWaiting() { return waiting; }
+    public int getMaxSize() { return maxSize; }
+    public long getAcquireCount() { return acquireCount; }
+    public long getAcquireTimeouts() { return acquireTimeouts; }
+    public double getAcquireP50Millis() { return acquireP50Millis; }
+    public double getAcquireP95Millis() { return acquireP95Millis; }
+    public double getAcquireP99Millis() { return acquireP99Millis; }
+    public double getAcquireMaxMillis() { return acquireMaxMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d total=%d/%d waiting=%d acquire[n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms timeouts=%d]",
+                active, idle, total, maxSize, waiting, acquireCount,
+                acquireP50Millis, acquireP95Millis, acquireP99Millis, acquireMaxMillis, acquireTimeouts);
+    }
+}
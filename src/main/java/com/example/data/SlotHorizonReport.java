@@ -0,0 +1,39 @@
+package com.example.data;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class SlotHorizonReport {
+    private LocalDate horizonEnd;
+    private Map<Integer, Integer> createdPerDoctor;
+    private Set<Integer> failedDoctors;
+    private Duration duration;
+
+    public SlotHorizonReport(LocalDate horizonEnd, Map<Integer, Integer> createdPerDoctor,
+                             Set<Integer> failedDoctors, Duration duration) {
+        this.horizonEnd = horizonEnd;
+        this.createdPerDoctor = Collections.unmodifiableMap(createdPerDoctor);
+        this.failedDoctors = Collections.unmodifiableSet(failedDoctors);
+        this.duration = duration;
+    }
+
+    public LocalDate getHorizonEnd() { return horizonEnd; }
+    public Map<Integer, Integer> getCreatedPerDoctor() { return createdPerDoctor; }
+    public Set<Integer> getFailedDoctors() { return failedDoctors; }
+    public Duration getDuration() { return duration; }
+
+    public int getTotalCreated() {
+        return createdPerDoctor.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Horyzont do " + horizonEnd + ": lekarzy=" + createdPerDoctor.size() +
+                ", nowych terminów=" + getTotalCreated() +
+                ", błędów=" + failedDoctors.size() +
+                ", czas=" + duration.toMillis() + " ms, per lekarz=" + createdPerDoctor;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram czasów z kubełkami rosnącymi wykładniczo (1 µs, 2 µs, 4 µs ... ~67 s).
+ * Zapis jest bezblokadowy, więc można go wołać z każdego wątku na gorącej ścieżce.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 27;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucketFor(nanos)].increment();
+        total.increment();
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /** Górna granica kubełka w nanosekundach; ostatni kubełek jest otwarty. */
+    public static long upperBoundNanos(int bucket) {
+        return bucket >= BUCKETS ? Long.MAX_VALUE : TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+    }
+
+    public static int bucketCount() {
+        return BUCKETS + 1;
+    }
+
+    private static int bucketFor(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        if (micros <= 1) return 0;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKETS);
+    }
+
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[counts.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            bucketCounts[i] = counts[i].sum();
+            count += bucketCounts[i];
+        }
+        return new Snapshot(bucketCounts, count, sumNanos.sum(), maxNanos.get());
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public static class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] bucketCounts, long count, long sumNanos, long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+        public long getSumNanos() { return sumNanos; }
+        public long[] getBucketCounts() { return bucketCounts.clone(); }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : toMillis(sumNanos / count);
+        }
+
+        public double getMaxMillis() {
+            return toMillis(maxNanos);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return toMillis(Math.min(upperBoundNanos(i), maxNanos));
+                }
+            }
+            return toMillis(maxNanos);
+        }
+
+        public double getP50Millis() { return getPercentileMillis(50); }
+        public double getP95Millis() { return getPercentileMillis(95); }
+        public double getP99Millis() { return getPercentileMillis(99); }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+@RestController
+public class MetricsEndpoint {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8");
+
+    private final boolean localOnly;
+
+    public MetricsEndpoint(@Value("${przychodnia.metrics.local-only:true}") boolean localOnly) {
+        this.localOnly = localOnly;
+    }
+
+    @GetMapping("${przychodnia.metrics.path:/metrics}")
+    public ResponseEntity<String> metrics(HttpServletRequest request) {
+        if (localOnly && !isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(PrometheusExporter.render());
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
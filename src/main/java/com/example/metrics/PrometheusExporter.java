@@ -0,0 +1,151 @@
+package com.example.metrics;
+
+import com.example.data.AvailabilityStatsDTO;
+import com.example.data.CacheStatsDTO;
+import com.example.data.HasherStatsDTO;
+import com.example.data.PoolStatsDTO;
+import com.example.security.PasswordHasher;
+import com.example.services.AvailabilityIndex;
+import com.example.services.DatabaseConnectionService;
+import com.example.services.PendingQueue;
+import com.example.services.ReferenceDataCache;
+import com.example.services.ScheduleChanges;
+import com.example.services.StatsCache;
+
+import java.util.List;
+import java.util.Map;
+
+/** Wszystkie metryki aplikacji w formacie tekstowym Prometheusa (wersja 0.0.4). */
+public class PrometheusExporter {
+
+    public static String render() {
+        StringBuilder out = new StringBuilder(8192);
+
+        Map<String, QueryStats> queries = QueryMetrics.getAll();
+        header(out, "przychodnia_query_duration_seconds", "histogram", "Czas zapytania (połączenie wydane -> zamknięte)");
+        queries.forEach((name, stats) -> histogram(out, "przychodnia_query_duration_seconds", label("query", name), stats.getLatency()));
+
+        header(out, "przychodnia_query_latency_seconds", "gauge", "Percentyle czasu zapytania (p50/p95/p99/max)");
+        queries.forEach((name, stats) -> quantiles(out, "przychodnia_query_latency_seconds", label("query", name), stats.getLatency()));
+
+        header(out, "przychodnia_query_errors_total", "counter", "Wywołania zakończone SQLException (bez przegranych wyścigów o termin)");
+        queries.forEach((name, stats) -> sample(out, "przychodnia_query_errors_total", label("query", name), stats.getErrors()));
+
+        header(out, "przychodnia_query_conflicts_total", "counter", "Wywołania przerwane przez uq_rezerwacja_termin_aktywna (przegrany wyścig o termin, nie błąd)");
+        queries.forEach((name, stats) -> sample(out, "przychodnia_query_conflicts_total", label("query", name), stats.getConflicts()));
+
+        header(out, "przychodnia_query_rows_total", "counter", "Wiersze odczytane z wyników");
+        queries.forEach((name, stats) -> sample(out, "przychodnia_query_rows_total", label("query", name), stats.getRows()));
+
+        header(out, "przychodnia_db_connection_acquire_seconds", "histogram", "Czas pobrania połączenia z puli");
+        histogram(out, "przychodnia_db_connection_acquire_seconds", "", DatabaseConnectionService.getAcquireTime());
+
+        PoolStatsDTO pool = DatabaseConnectionService.getPoolStats();
+        gauge(out, "przychodnia_db_pool_active", "Połączenia w użyciu", pool.getActive());
+        gauge(out, "przychodnia_db_pool_idle", "Połączenia wolne", pool.getIdle());
+        gauge(out, "przychodnia_db_pool_total", "Połączenia otwarte", pool.getTotal());
+        gauge(out, "przychodnia_db_pool_max", "Maksymalny rozmiar puli", pool.getMaxSize());
+        gauge(out, "przychodnia_db_pool_waiting", "Wątki czekające na połączenie", pool.getWaiting());
+        counter(out, "przychodnia_db_pool_acquire_timeouts_total", "Przekroczenia czasu pobrania połączenia", pool.getAcquireTimeouts());
+
+        HasherStatsDTO hasher = PasswordHasher.getStats();
+        gauge(out, "przychodnia_password_hash_active", "Hashowania w toku", hasher.getActive());
+        gauge(out, "przychodnia_password_hash_queued", "Hashowania w kolejce", hasher.getQueued());
+        gauge(out, "przychodnia_password_hash_queue_capacity", "Pojemność kolejki hashowania", hasher.getQueueCapacity());
+        counter(out, "przychodnia_password_hash_completed_total", "Wykonane hashowania", hasher.getCompleted());
+        counter(out, "przychodnia_password_hash_rejected_total", "Hashowania odrzucone (pełna kolejka)", hasher.getRejected());
+        counter(out, "przychodnia_password_hash_timeouts_total", "Hashowania przerwane po czasie", hasher.getTimeouts());
+
+        List<CacheStatsDTO> caches = ReferenceDataCache.getStats();
+        header(out, "przychodnia_reference_cache_hits_total", "counter", "Odczyty słowników obsłużone z cache");
+        caches.forEach(cache -> sample(out, "przychodnia_reference_cache_hits_total", label("region", cache.getRegion()), cache.getHits()));
+        header(out, "przychodnia_reference_cache_misses_total", "counter", "Odczyty słowników z bazy (brak, wygaśnięcie lub unieważnienie)");
+        caches.forEach(cache -> sample(out, "przychodnia_reference_cache_misses_total", label("region", cache.getRegion()), cache.getMisses()));
+        header(out, "przychodnia_reference_cache_entries", "gauge", "Wpisy w cache słowników");
+        caches.forEach(cache -> sample(out, "przychodnia_reference_cache_entries", label("region", cache.getRegion()), cache.getEntries()));
+
+        AvailabilityStatsDTO availability = AvailabilityIndex.getStats();
+        gauge(out, "przychodnia_availability_doctors", "Lekarze pokryci indeksem dostępności", availability.getDoctors());
+        gauge(out, "przychodnia_availability_days", "Dni lekarzy w indeksie dostępności", availability.getDays());
+        header(out, "przychodnia_availability_lookups_total", "counter", "Zapytania o wolne terminy wg źródła odpowiedzi");
+        sample(out, "przychodnia_availability_lookups_total", label("source", "index"), availability.getIndexLookups());
+        sample(out, "przychodnia_availability_lookups_total", label("source", "db"), availability.getDatabaseLookups());
+        counter(out, "przychodnia_availability_drift_total", "Dni poprawione przy uzgadnianiu indeksu z bazą", availability.getDrift());
+        gauge(out, "przychodnia_availability_reconcile_seconds", "Czas ostatniego uzgadniania indeksu", availability.getLastReconcileMillis() / 1000);
+
+        counter(out, "przychodnia_schedule_changes_published_total", "Powiadomienia o zmianach wysłane (NOTIFY)", ScheduleChanges.getPublished());
+        counter(out, "przychodnia_schedule_changes_received_total", "Powiadomienia o zmianach odebrane (LISTEN)", ScheduleChanges.getReceived());
+
+        counter(out, "przychodnia_stats_cache_hits_total", "Dni statystyk podane z cache", StatsCache.getHits());
+        counter(out, "przychodnia_stats_cache_misses_total", "Dni statystyk doczytane z bazy", StatsCache.getMisses());
+        counter(out, "przychodnia_stats_cache_evictions_total", "Dni statystyk wypchnięte z cache", StatsCache.getEvictions());
+        header(out, "przychodnia_stats_cache_heatmap_lookups_total", "counter", "Mapy popytu wg źródła odpowiedzi");
+        sample(out, "przychodnia_stats_cache_heatmap_lookups_total", label("source", "cache"), StatsCache.getHeatmapHits());
+        sample(out, "przychodnia_stats_cache_heatmap_lookups_total", label("source", "db"), StatsCache.getHeatmapMisses());
+        gauge(out, "przychodnia_stats_cache_entries", "Dni statystyk w cache (dzień × podział)", StatsCache.getEntries());
+        gauge(out, "przychodnia_stats_cache_rows", "Wiersze statystyk w cache", StatsCache.getRows());
+
+        gauge(out, "przychodnia_pending_queue_items", "Rezerwacje w kolejce rejestracji (0, gdy nikt jej nie ogląda)", PendingQueue.size());
+        gauge(out, "przychodnia_pending_queue_subscribers", "Pulpity rejestracji podłączone do kolejki", PendingQueue.getSubscribers());
+        counter(out, "przychodnia_pending_queue_deltas_total", "Zmiany pozycji kolejki wysłane do pulpitów", PendingQueue.getDeltas());
+        counter(out, "przychodnia_pending_queue_point_queries_total", "Zapytania o pojedynczą pozycję kolejki", PendingQueue.getPointQueries());
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        sample(out, name, "", value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, double value) {
+        header(out, name, "counter", help);
+        sample(out, name, "", value);
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        long[] buckets = snapshot.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i];
+            long bound = LatencyHistogram.upperBoundNanos(i);
+            String le = bound == Long.MAX_VALUE ? "+Inf" : format(bound / 1e9);
+            sample(out, name + "_bucket", join(labels, label("le", le)), cumulative);
+        }
+        sample(out, name + "_sum", labels, snapshot.getSumNanos() / 1e9);
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+
+    private static void quantiles(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        sample(out, name, join(labels, label("quantile", "0.5")), snapshot.getP50Millis() / 1000);
+        sample(out, name, join(labels, label("quantile", "0.95")), snapshot.getP95Millis() / 1000);
+        sample(out, name, join(labels, label("quantile", "0.99")), snapshot.getP99Millis() / 1000);
+        sample(out, name, join(labels, label("quantile", "1")), snapshot.getMaxMillis() / 1000);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static String join(String first, String second) {
+        return first.isEmpty() ? second : first + "," + second;
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.metrics;
+
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pomiar zapytań per nazwa (np. "ReceptionService.getAllDoctors"). Połączenie owinięte przez
+ * {@link #instrument} mierzy czas od wydania do zamknięcia, liczy wiersze odczytane z ResultSet-ów
+ * i oznacza wywołanie jako błędne, gdy któraś operacja JDBC rzuci SQLException. Wyjątek: naruszenie
+ * uq_rezerwacja_termin_aktywna to przegrany wyścig o termin (serwis zamienia je na "termin zajęty"),
+ * więc liczone jest osobno jako konflikt. Inne naruszenia unikalności (login, PESEL...) to błędy.
+ * Czas pobrania połączenia z puli nie wchodzi do pomiaru - liczy go osobno pula.
+ */
+public class QueryMetrics {
+
+    private static final Map<String, QueryStats> STATS = new ConcurrentHashMap<>();
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String SLOT_CONSTRAINT = "uq_rezerwacja_termin_aktywna";
+
+    /** Parametr instrukcji: wywołany setter ({@code setInt}, {@code setDate}, {@code setNull}...) i jego argumenty. */
+    public record Binding(Method setter, Object[] args) {}
+
+    /** Podgląd wykonywanych instrukcji (np. do sprawdzania planów zapytań); domyślnie wyłączony. */
+    @FunctionalInterface
+    public interface StatementListener {
+        void executed(String queryName, String sql, List<Binding> bindings);
+    }
+
+    private static volatile StatementListener listener;
+
+    public static void setStatementListener(StatementListener statementListener) {
+        listener = statementListener;
+    }
+
+    public static Connection instrument(String name, Connection connection) {
+        Call call = new Call(stats(name));
+        return (Connection) Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection, call));
+    }
+
+    /** Błąd zanim powstało połączenie (np. timeout puli). */
+    public static void recordFailure(String name, long nanos) {
+        stats(name).record(nanos, 0, true, false);
+    }
+
+    /** Wszystkie zapytania posortowane po nazwie. */
+    public static Map<String, QueryStats> getAll() {
+        return new TreeMap<>(STATS);
+    }
+
+    private static QueryStats stats(String name) {
+        return STATS.computeIfAbsent(name, QueryStats::new);
+    }
+
+    private static class Call {
+        private final QueryStats stats;
+        private final long started = System.nanoTime();
+        private long rows;
+        private boolean failed;
+        private boolean conflict;
+        private boolean recorded;
+
+        Call(QueryStats stats) {
+            this.stats = stats;
+        }
+
+        // Połączenie zwykle obsługuje jeden wątek, więc synchronized jest tu praktycznie bezkosztowe
+        synchronized void finish() {
+            if (recorded) return;
+            recorded = true;
+            stats.record(System.nanoTime() - started, rows, failed, conflict && !failed);
+        }
+
+        synchronized void row() { rows++; }
+        synchronized void fail() { failed = true; }
+        synchronized void conflict() { conflict = true; }
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+        final Object target;
+        final Call call;
+
+        Handler(Object target, Call call) {
+            this.target = target;
+            this.call = call;
+        }
+
+        Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    if (isSlotConflict(sqlException)) call.conflict();
+                    else call.fail();
+                }
+                throw e.getCause();
+            }
+        }
+
+        static boolean isSlotConflict(SQLException e) {
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState()) || !(e instanceof PSQLException psql)) return false;
+            ServerErrorMessage detail = psql.getServerErrorMessage();
+            return detail != null && SLOT_CONSTRAINT.equals(detail.getConstraint());
+        }
+
+        static Object wrap(Class<?> type, InvocationHandler handler) {
+            return Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+
+    private static class ConnectionHandler extends Handler {
+        ConnectionHandler(Connection target, Call call) {
+            super(target, call);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName())) {
+                try {
+                    return invokeTarget(method, args);
+                } finally {
+                    call.finish();
+                }
+            }
+            Object result = invokeTarget(method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return wrap(method.getReturnType(), new StatementHandler(result, call, sql));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler extends Handler {
+        private final String sql;
+        private final List<Binding> bindings = new ArrayList<>();
+
+        StatementHandler(Object target, Call call, String sql) {
+            super(target, call);
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            StatementListener statementListener = listener;
+            if (statementListener != null) {
+                observe(statementListener, method, args);
+            }
+            Object result = invokeTarget(method, args);
+            if (result instanceof ResultSet && method.getReturnType() == ResultSet.class) {
+                return wrap(ResultSet.class, new ResultSetHandler(result, call));
+            }
+            return result;
+        }
+
+        private void observe(StatementListener statementListener, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(new Binding(method, args.clone()));
+            } else if ("clearParameters".equals(name)) {
+                bindings.clear();
+            } else if (name.startsWith("execute")) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+                if (executed != null) {
+                    statementListener.executed(call.stats.getName(), executed, List.copyOf(bindings));
+                }
+            }
+        }
+    }
+
+    private static class ResultSetHandler extends Handler {
+        ResultSetHandler(Object target, Call call) {
+            super(target, call);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                call.row();
+            }
+            return result;
+        }
+    }
+}
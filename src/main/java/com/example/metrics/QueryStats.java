@@ -0,0 +1,31 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Liczniki jednego nazwanego zapytania (metody serwisu). */
+public class QueryStats {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    QueryStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, long rowCount, boolean failed, boolean conflict) {
+        latency.record(nanos);
+        rows.add(rowCount);
+        if (failed) errors.increment();
+        if (conflict) conflicts.increment();
+    }
+
+    public String getName() { return name; }
+    public LatencyHistogram.Snapshot getLatency() { return latency.snapshot(); }
+    public long getErrors() { return errors.sum(); }
+    /** Wywołania przerwane naruszeniem unikalności - oczekiwany wynik wyścigu, nie błąd. */
+    public long getConflicts() { return conflicts.sum(); }
+    public long getRows() { return rows.sum(); }
+}
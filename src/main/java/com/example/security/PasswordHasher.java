@@ -0,0 +1,118 @@
+package com.example.security;
+
+import com.example.data.HasherStatsDTO;
+import com.example.metrics.LatencyHistogram;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.SQLTransientException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BCrypt na osobnej, ograniczonej puli wątków. Wołać przed pobraniem połączenia z bazy -
+ * hash trwa ~100 ms i nie może trzymać połączenia ani blokad wierszy.
+ * Przy przepełnionej kolejce lub zbyt długim oczekiwaniu zgłasza {@link SQLTransientException}
+ * ("spróbuj ponownie"), zamiast kolejkować bez końca.
+ */
+public class PasswordHasher {
+
+    private static final int THREADS = envInt("PASSWORD_HASH_THREADS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_CAPACITY = envInt("PASSWORD_HASH_QUEUE", 64);
+    private static final long TIMEOUT_MS = envInt("PASSWORD_HASH_TIMEOUT_MS", 10_000);
+
+    private static final String BUSY_MESSAGE = "System jest chwilowo przeciążony, spróbuj ponownie za moment.";
+
+    private static final LatencyHistogram QUEUE_WAIT = new LatencyHistogram();
+    private static final LatencyHistogram HASH_TIME = new LatencyHistogram();
+    private static final LongAdder REJECTED = new LongAdder();
+    private static final LongAdder TIMEOUTS = new LongAdder();
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    public static String hash(String plainPassword) throws SQLTransientException {
+        return run(() -> BCrypt.hashpw(plainPassword, BCrypt.gensalt()));
+    }
+
+    public static boolean verify(String plainPassword, String hashed) throws SQLTransientException {
+        return run(() -> BCrypt.checkpw(plainPassword, hashed));
+    }
+
+    public static HasherStatsDTO getStats() {
+        LatencyHistogram.Snapshot wait = QUEUE_WAIT.snapshot();
+        LatencyHistogram.Snapshot hash = HASH_TIME.snapshot();
+        return new HasherStatsDTO(
+                EXECUTOR.getActiveCount(),
+                THREADS,
+                EXECUTOR.getQueue().size(),
+                QUEUE_CAPACITY,
+                hash.getCount(),
+                REJECTED.sum(),
+                TIMEOUTS.sum(),
+                wait.getP50Millis(),
+                wait.getP99Millis(),
+                hash.getP50Millis(),
+                hash.getP99Millis()
+        );
+    }
+
+    private static <T> T run(Callable<T> task) throws SQLTransientException {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = EXECUTOR.submit(() -> {
+                long started = System.nanoTime();
+                QUEUE_WAIT.record(started - submitted);
+                try {
+                    return task.call();
+                } finally {
+                    HASH_TIME.record(System.nanoTime() - started);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            throw new SQLTransientException(BUSY_MESSAGE, e);
+        }
+
+        try {
+            return future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            TIMEOUTS.increment();
+            throw new SQLTransientException(BUSY_MESSAGE, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException(BUSY_MESSAGE, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+}
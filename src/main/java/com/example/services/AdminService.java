@@ -1,12 +1,11 @@
 package com.example.services;
 
+import com.example.security.PasswordHasher;
 import com.example.security.UserValidator;
-import org.mindrot.jbcrypt.BCrypt;
 import com.example.data.UserDTO;
 import com.example.data.SpecjalizacjaDTO;
 
 import java.sql.*;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
@@ -18,16 +17,16 @@ public class AdminService {
                                String email, String telefon,
                                LocalTime startPracy, LocalTime koniecPracy, int idSpecjalizacji) throws SQLException {
 
+        String hashedPassword = PasswordHasher.hash(haslo);
+
         Connection conn = null;
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("AdminService.registerDoctor");
 
             UserValidator.checkUniqueness(conn, login, email, telefon, null);
 
             conn.setAutoCommit(false);
 
-            String hashedPassword = BCrypt.hashpw(haslo, BCrypt.gensalt());
-
             String insertUserSql = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Rola, Email, Numer_telefonu, Czy_aktywny) VALUES (?, ?, ?, ?, 'Lekarz', ?, ?, TRUE)";
 
             int newUserId = -1;
@@ -52,9 +51,13 @@ public class AdminService {
                 stmt.executeUpdate();
             }
 
-            generateSlotsForDoctor(conn, newUserId, startPracy, koniecPracy, LocalDate.now(), LocalDate.now().plusMonths(3));
+            SlotGenerator.generate(conn, newUserId, startPracy, koniecPracy, LocalDate.now(), LocalDate.now().plusMonths(3));
 
+            ScheduleChanges.publish(conn, ScheduleChange.schedule(newUserId));
             conn.commit();
+            ReferenceDataCache.invalidateAll();
+            AvailabilityIndex.reloadDoctor(newUserId);
+            StatsCache.invalidateHeatmaps();
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw e;
@@ -66,11 +69,12 @@ public class AdminService {
     public void registerReceptionist(String imie, String nazwisko, String login, String haslo,
                                      String email, String telefon) throws SQLException {
 
-        try (Connection conn = DatabaseConnectionService.getConnection()) {
+        String hashedPassword = PasswordHasher.hash(haslo);
+
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminService.registerReceptionist")) {
 
             UserValidator.checkUniqueness(conn, login, email, telefon, null);
             conn.setAutoCommit(false);
-            String hashedPassword = BCrypt.hashpw(haslo, BCrypt.gensalt());
 
             String sqlUser = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Rola, Email, Numer_telefonu, Czy_aktywny) VALUES (?, ?, ?, ?, 'Rejestracja', ?, ?, TRUE)";
             String sqlRecep = "INSERT INTO PracownikRejestracji (ID_Uzytkownika) VALUES (?)";
@@ -132,32 +136,43 @@ public class AdminService {
 
 
     public List<SpecjalizacjaDTO> getAllSpecializations() {
+        try {
+            return ReferenceDataCache.get("specjalizacje_admin", () -> List.copyOf(loadAllSpecializations()));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    private List<SpecjalizacjaDTO> loadAllSpecializations() throws SQLException {
         List<SpecjalizacjaDTO> list = new ArrayList<>();
         String sql = "SELECT ID_Specjalizacji, Specjalizacja FROM Specjalizacja ORDER BY Specjalizacja";
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminService.getAllSpecializations");
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
                 list.add(new SpecjalizacjaDTO(rs.getInt("ID_Specjalizacji"), rs.getString("Specjalizacja")));
             }
-        } catch (SQLException e) { e.printStackTrace(); }
+        }
         return list;
     }
 
     public void toggleUserStatus(int userId, boolean isActive) throws SQLException {
         String sql = "UPDATE Uzytkownik SET Czy_aktywny = ? WHERE ID_Uzytkownika = ?";
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminService.toggleUserStatus");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBoolean(1, isActive);
             stmt.setInt(2, userId);
             stmt.executeUpdate();
+            ScheduleChanges.publish(conn, ScheduleChange.referenceData());
         }
+        ReferenceDataCache.invalidateAll();
     }
 
     public void updateDoctorHours(int doctorIdIsUserId, LocalTime newStart, LocalTime newEnd) throws SQLException {
         Connection conn = null;
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("AdminService.updateDoctorHours");
             conn.setAutoCommit(false);
 
             String updateDoctorSql = "UPDATE Lekarz SET Start_pracy = ?, Koniec_pracy = ? WHERE ID_Uzytkownika = ?";
@@ -172,7 +187,7 @@ public class AdminService {
                     "WHERE ID_Lekarza = ? " +
                     "AND Data >= CURRENT_DATE " +
                     "AND (Godzina < ? OR Godzina >= ?) " +
-                    "AND ID_Terminu NOT IN (SELECT ID_Terminu FROM Rezerwacja)";
+                    "AND NOT EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.ID_Terminu = Termin.ID_Terminu)";
 
             try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
                 stmt.setInt(1, doctorIdIsUserId);
@@ -181,9 +196,13 @@ public class AdminService {
                 stmt.executeUpdate();
             }
 
-            generateSlotsForDoctor(conn, doctorIdIsUserId, newStart, newEnd, LocalDate.now(), LocalDate.now().plusMonths(3));
+            SlotGenerator.generate(conn, doctorIdIsUserId, newStart, newEnd, LocalDate.now(), LocalDate.now().plusMonths(3));
 
+            ScheduleChanges.publish(conn, ScheduleChange.schedule(doctorIdIsUserId));
             conn.commit();
+            ReferenceDataCache.invalidateAll();
+            AvailabilityIndex.reloadDoctor(doctorIdIsUserId);
+            StatsCache.invalidateHeatmaps();
 
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
@@ -193,72 +212,104 @@ public class AdminService {
         }
     }
 
-    private void generateSlotsForDoctor(Connection conn, int userId, LocalTime start, LocalTime end, LocalDate dateFrom, LocalDate dateTo) throws SQLException {
-        String checkSql = "SELECT 1 FROM Termin WHERE ID_Lekarza = ? AND Data = ? AND Godzina = ?";
-        String insertSql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) VALUES (?, ?, ?)";
+    /**
+     * Kolumny, po których można sortować listę użytkowników; remis zawsze rozstrzyga ID.
+     * W obrębie roli porządek po nazwisku - tak jak indeks (Rola, Nazwisko, ID_Uzytkownika), bez sortowania w planie.
+     */
+    public enum UserSort {
+        IMIE("Imie"),
+        NAZWISKO("Nazwisko"),
+        ROLA("Rola", "Nazwisko");
 
-        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-
-            LocalDate currentDate = dateFrom;
-            while (currentDate.isBefore(dateTo)) {
-                DayOfWeek dzien = currentDate.getDayOfWeek();
-                if (dzien == DayOfWeek.SATURDAY || dzien == DayOfWeek.SUNDAY) {
-                    currentDate = currentDate.plusDays(1);
-                    continue;
-                }
+        private final List<String> columns;
 
-                LocalTime currentTime = start;
-                while (currentTime.isBefore(end)) {
-                    checkStmt.setInt(1, userId);
-                    checkStmt.setDate(2, Date.valueOf(currentDate));
-                    checkStmt.setTime(3, Time.valueOf(currentTime));
-
-                    ResultSet rs = checkStmt.executeQuery();
-                    if (!rs.next()) {
-                        insertStmt.setInt(1, userId);
-                        insertStmt.setDate(2, Date.valueOf(currentDate));
-                        insertStmt.setTime(3, Time.valueOf(currentTime));
-                        insertStmt.addBatch();
-                    }
-                    currentTime = currentTime.plusMinutes(15);
-                }
-                currentDate = currentDate.plusDays(1);
-            }
-            insertStmt.executeBatch();
+        UserSort(String... columns) {
+            this.columns = List.of(columns);
         }
     }
 
-    public List<UserDTO> getAllUsers() {
+    /**
+     * Strona użytkowników w porządku {@code sort} (+ ID), zaczynająca się za wierszem {@code after}
+     * (null = od początku) i pomijająca jeszcze {@code skip} wierszy. Stronicowanie po kluczu zamiast
+     * OFFSET sprawia, że każda kolejna strona kosztuje tyle samo, niezależnie od liczby użytkowników.
+     * Wyszukiwanie: każde słowo musi być początkiem imienia, nazwiska, e-maila lub telefonu.
+     */
+    public List<UserDTO> findUsers(String search, String role, UserSort sort, boolean descending,
+                                   UserDTO after, int skip, int limit) throws SQLException {
         List<UserDTO> users = new ArrayList<>();
-        String sql = "SELECT ID_Uzytkownika, Imie, Nazwisko, Login, Rola, Email, Numer_telefonu, Czy_aktywny " +
-                "FROM Uzytkownik ORDER BY Nazwisko";
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT ID_Uzytkownika, Imie, Nazwisko, Login, Rola, Email, Numer_telefonu, Czy_aktywny " +
+                "FROM Uzytkownik WHERE TRUE");
+
+        if (role != null) {
+            sql.append(" AND Rola = ?");
+            params.add(role);
+        }
+        if (search != null && !search.isBlank()) {
+            for (String word : search.trim().toLowerCase().split("\\s+")) {
+                String pattern = SqlPatterns.likePrefix(word);
+                sql.append(" AND (lower(Imie) LIKE ? ESCAPE '\\' OR lower(Nazwisko) LIKE ? ESCAPE '\\'" +
+                        " OR lower(Email) LIKE ? ESCAPE '\\' OR CAST(Numer_telefonu AS text) LIKE ? ESCAPE '\\')");
+                params.add(pattern);
+                params.add(pattern);
+                params.add(pattern);
+                params.add(pattern);
+            }
+        }
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        String direction = descending ? "DESC" : "ASC";
+        if (after != null) {
+            sql.append(" AND (").append(String.join(", ", sort.columns)).append(", ID_Uzytkownika) ")
+                    .append(descending ? "<" : ">").append(" (")
+                    .append("?, ".repeat(sort.columns.size())).append("?)");
+            params.addAll(sortValues(after, sort));
+            params.add(after.getId());
+        }
+        sql.append(" ORDER BY ");
+        for (String column : sort.columns) {
+            sql.append(column).append(' ').append(direction).append(", ");
+        }
+        sql.append("ID_Uzytkownika ").append(direction)
+                .append(" LIMIT ? OFFSET ?");
+        params.add(limit);
+        params.add(skip);
+
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminService.findUsers");
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
 
-            while (rs.next()) {
-                int idUser = rs.getInt("ID_Uzytkownika");
-                String rola = rs.getString("Rola");
-                Integer idLekarzaDlaDto = "Lekarz".equals(rola) ? idUser : null;
-
-                users.add(new UserDTO(
-                        idUser,
-                        rs.getString("Imie"),
-                        rs.getString("Nazwisko"),
-                        rs.getString("Login"),
-                        rola,
-                        rs.getString("Email"),
-                        rs.getString("Numer_telefonu"),
-                        rs.getBoolean("Czy_aktywny"),
-                        idLekarzaDlaDto,
-                        null
-                ));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int idUser = rs.getInt("ID_Uzytkownika");
+                    String rola = rs.getString("Rola");
+                    Integer idLekarzaDlaDto = "Lekarz".equals(rola) ? idUser : null;
+
+                    users.add(new UserDTO(
+                            idUser,
+                            rs.getString("Imie"),
+                            rs.getString("Nazwisko"),
+                            rs.getString("Login"),
+                            rola,
+                            rs.getString("Email"),
+                            rs.getString("Numer_telefonu"),
+                            rs.getBoolean("Czy_aktywny"),
+                            idLekarzaDlaDto,
+                            null
+                    ));
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return users;
     }
-}
\ No newline at end of file
+
+    private static List<String> sortValues(UserDTO user, UserSort sort) {
+        return switch (sort) {
+            case IMIE -> List.of(user.getImie());
+            case NAZWISKO -> List.of(user.getNazwisko());
+            case ROLA -> List.of(user.getRola(), user.getNazwisko());
+        };
+    }
+}
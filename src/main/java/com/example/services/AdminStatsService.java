@@ -1,31 +1,131 @@
 package com.example.services;
 
+import com.example.data.DailyStatsDTO;
+import com.example.data.HeatmapDTO;
+
 import java.sql.*;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class AdminStatsService {
 
-    public Map<LocalDate, Integer> getDailyStats(LocalDate start, LocalDate end, boolean isCancellation) {
+    /** Podział statystyk dnia: cała przychodnia, lekarz albo specjalizacja. */
+    public enum Breakdown { BRAK, LEKARZ, SPECJALIZACJA }
+
+    /** Szerokość przedziału wykresu - dobierana do długości zakresu, żeby słupków było najwyżej kilkadziesiąt. */
+    public enum Bucket {
+        DZIEN, TYDZIEN, MIESIAC;
+
+        public static Bucket forRange(LocalDate start, LocalDate end) {
+            long days = ChronoUnit.DAYS.between(start, end) + 1;
+            if (days <= 62) return DZIEN;
+            if (days <= 366) return TYDZIEN;
+            return MIESIAC;
+        }
+
+        /** Pierwszy dzień przedziału zawierającego {@code day} (tydzień od poniedziałku). */
+        public LocalDate startOf(LocalDate day) {
+            return switch (this) {
+                case DZIEN -> day;
+                case TYDZIEN -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MIESIAC -> day.withDayOfMonth(1);
+            };
+        }
+    }
+
+    // Wszystkie serie w jednym przebiegu po podsumowaniu dziennym - agregaty warunkowe zamiast zapytania na serię
+    private static final String SERIES =
+            "COALESCE(SUM(sd.Liczba) FILTER (WHERE sd.Status_rezerwacji <> 'Anulowana'), 0) AS Zarezerwowane, " +
+            "COALESCE(SUM(sd.Liczba) FILTER (WHERE sd.Status_rezerwacji = 'Anulowana'), 0) AS Anulowane, " +
+            "COALESCE(SUM(sd.Liczba) FILTER (WHERE sd.Status_rezerwacji = 'Odbyta'), 0) AS Odbyte, " +
+            "COALESCE(SUM(sd.Liczba) FILTER (WHERE sd.Status_rezerwacji = 'Nieodbyta'), 0) AS Nieodbyte, " +
+            "COALESCE(SUM(sd.Liczba) FILTER (WHERE sd.Status_rezerwacji LIKE 'Wymaga potwierdzenia%'), 0) AS Oczekujace ";
+
+    private static final String ROLLUP_FROM_RESERVATIONS =
+            "INSERT INTO Statystyka_dzienna (Data, ID_Lekarza, Status_rezerwacji, Liczba) " +
+            "SELECT t.Data, t.ID_Lekarza, r.Status_rezerwacji, COUNT(*) " +
+            "FROM Rezerwacja r JOIN Termin t ON t.ID_Terminu = r.ID_Terminu " +
+            "GROUP BY 1, 2, 3";
+
+    // Podsumowanie plus zmiany dopisane przez wyzwalacze od ostatniego scalenia (V6)
+    private static final String ROLLUP =
+            "(SELECT Data, ID_Lekarza, Status_rezerwacji, Liczba FROM Statystyka_dzienna " +
+            " UNION ALL " +
+            " SELECT Data, ID_Lekarza, Status_rezerwacji, Liczba FROM Statystyka_dzienna_zmiany) sd ";
+
+    /**
+     * Statystyki rezerwacji dzień po dniu w [start, end] wg daty terminu, z tabeli Statystyka_dzienna
+     * i jej niescalonych zmian (wyzwalacze, migracje V4 i V6) - koszt zależy od liczby dni, nie rezerwacji.
+     * Minione dni idą z {@link StatsCache}, do bazy trafia tylko reszta zakresu.
+     * Bez podziału zwraca każdy dzień zakresu (także z zerami); z podziałem tylko pary dzień-grupa,
+     * w których coś było, posortowane po dacie i nazwie grupy.
+     */
+    public List<DailyStatsDTO> getDailyStats(LocalDate start, LocalDate end, Breakdown breakdown) throws SQLException {
+        List<DailyStatsDTO> rows = StatsCache.get(breakdown, start, end, (from, to) -> queryDailyStats(from, to, breakdown));
+        return breakdown == Breakdown.BRAK ? fillDays(start, end, rows) : rows;
+    }
+
+    /**
+     * Jak {@link #getDailyStats}, ale zsumowane w przedziały {@code bucket}. Data wiersza to początek
+     * przedziału (pierwszy przycięty do {@code start}); sumowanie idzie po dniach z cache, bez osobnego zapytania.
+     */
+    public List<DailyStatsDTO> getStats(LocalDate start, LocalDate end, Breakdown breakdown, Bucket bucket) throws SQLException {
+        List<DailyStatsDTO> days = getDailyStats(start, end, breakdown);
+        if (bucket == Bucket.DZIEN) return days;
 
-        Map<LocalDate, Integer> stats = new LinkedHashMap<>();
-        LocalDate current = start;
-        while (!current.isAfter(end)) {
-            stats.put(current, 0);
-            current = current.plusDays(1);
+        record BucketKey(LocalDate data, int grupaId) {}
+        Map<BucketKey, DailyStatsDTO> buckets = new LinkedHashMap<>();
+        for (DailyStatsDTO day : days) {
+            LocalDate from = bucket.startOf(day.getData());
+            if (from.isBefore(start)) from = start;
+            buckets.merge(new BucketKey(from, day.getGrupaId()), day, (sum, next) -> new DailyStatsDTO(sum.getData(),
+                    sum.getGrupaId(), sum.getGrupa(),
+                    sum.getBooked() + next.getBooked(), sum.getCancelled() + next.getCancelled(),
+                    sum.getCompleted() + next.getCompleted(), sum.getNoShow() + next.getNoShow(),
+                    sum.getPending() + next.getPending()));
         }
+        List<DailyStatsDTO> result = new ArrayList<>();
+        buckets.forEach((key, sum) -> result.add(new DailyStatsDTO(key.data(), sum.getGrupaId(), sum.getGrupa(),
+                sum.getBooked(), sum.getCancelled(), sum.getCompleted(), sum.getNoShow(), sum.getPending())));
+        return result;
+    }
 
-        String operator = isCancellation ? "=" : "<>";
+    private List<DailyStatsDTO> queryDailyStats(LocalDate start, LocalDate end, Breakdown breakdown) throws SQLException {
+        String group;
+        String joins;
+        switch (breakdown) {
+            case LEKARZ -> {
+                group = "sd.ID_Lekarza, u.Imie || ' ' || u.Nazwisko";
+                // Przez małą tabelę Lekarz - przy UNION ALL planer nie zna rozkładu ID i haszowałby całe Uzytkownik
+                joins = "JOIN Lekarz l ON l.ID_Uzytkownika = sd.ID_Lekarza " +
+                        "JOIN Uzytkownik u ON u.ID_Uzytkownika = l.ID_Uzytkownika ";
+            }
+            case SPECJALIZACJA -> {
+                group = "COALESCE(l.ID_Specjalizacji, 0), COALESCE(s.Specjalizacja, 'Bez specjalizacji')";
+                joins = "JOIN Lekarz l ON l.ID_Uzytkownika = sd.ID_Lekarza " +
+                        "LEFT JOIN Specjalizacja s ON s.ID_Specjalizacji = l.ID_Specjalizacji ";
+            }
+            default -> {
+                group = "0, NULL";
+                joins = "";
+            }
+        }
 
-        String sql = "SELECT t.Data, COUNT(r.ID_Rezerwacji) as Liczba " +
-                "FROM Termin t " +
-                "JOIN Rezerwacja r ON t.ID_Terminu = r.ID_Terminu " +
-                "WHERE t.Data BETWEEN ? AND ? " +
-                "AND r.Status_rezerwacji " + operator + " 'Anulowana' " +
-                "GROUP BY t.Data";
+        String sql = "SELECT sd.Data, " + group + ", " + SERIES +
+                "FROM " + ROLLUP +
+                joins +
+                "WHERE sd.Data BETWEEN ? AND ? " +
+                "GROUP BY 1, 2, 3 " +
+                "ORDER BY 1, 3";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        List<DailyStatsDTO> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminStatsService.getDailyStats");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setDate(1, Date.valueOf(start));
@@ -33,16 +133,149 @@ public class AdminStatsService {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    LocalDate date = rs.getDate("Data").toLocalDate();
-                    int count = rs.getInt("Liczba");
-                    if (stats.containsKey(date)) {
-                        stats.put(date, count);
-                    }
+                    rows.add(new DailyStatsDTO(rs.getDate(1).toLocalDate(), rs.getInt(2), rs.getString(3),
+                            rs.getInt("Zarezerwowane"), rs.getInt("Anulowane"), rs.getInt("Odbyte"),
+                            rs.getInt("Nieodbyte"), rs.getInt("Oczekujace")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Mapa popytu tydzień × kwadrans dla terminów z [start, end], opcjonalnie jednej specjalizacji
+     * (0 = wszystkie): oferowane terminy, zajęte i anulowane rezerwacje. Liczona w bazie jednym
+     * grupowaniem, wynik trzyma {@link StatsCache}. W trybie wirtualnych terminów oferowane są też
+     * godziny pracy w dni robocze, dla których nie powstał jeszcze wiersz Termin.
+     */
+    public HeatmapDTO getDemandHeatmap(LocalDate start, LocalDate end, int specializationId) throws SQLException {
+        return StatsCache.getHeatmap(start, end, specializationId, () -> queryDemandHeatmap(start, end, specializationId));
+    }
+
+    private HeatmapDTO queryDemandHeatmap(LocalDate start, LocalDate end, int specializationId) throws SQLException {
+        String specFilter = "(? = 0 OR l.ID_Specjalizacji = ?) ";
+        // Co najwyżej jedna aktywna rezerwacja na termin (uq_rezerwacja_termin_aktywna), więc LEFT JOIN nie mnoży terminów
+        String sql = "SELECT EXTRACT(ISODOW FROM x.Data)::int - 1 AS Dzien, " +
+                "       EXTRACT(HOUR FROM x.Godzina)::int * 4 + EXTRACT(MINUTE FROM x.Godzina)::int / 15 AS Kwadrans, " +
+                "       SUM(x.Oferowane) AS Oferowane, SUM(x.Zajete) AS Zajete, SUM(x.Anulowane) AS Anulowane " +
+                "FROM ( " +
+                "    SELECT t.Data, t.Godzina, 1 AS Oferowane, (r.ID_Rezerwacji IS NOT NULL)::int AS Zajete, 0 AS Anulowane " +
+                "    FROM Termin t " +
+                "    JOIN Lekarz l ON l.ID_Uzytkownika = t.ID_Lekarza " +
+                "    LEFT JOIN Rezerwacja r ON r.ID_Terminu = t.ID_Terminu AND r.Status_rezerwacji <> 'Anulowana' " +
+                "    WHERE t.Data BETWEEN ? AND ? AND " + specFilter +
+                "    UNION ALL " +
+                "    SELECT t.Data, t.Godzina, 0, 0, 1 " +
+                "    FROM Rezerwacja r " +
+                "    JOIN Termin t ON t.ID_Terminu = r.ID_Terminu " +
+                "    JOIN Lekarz l ON l.ID_Uzytkownika = t.ID_Lekarza " +
+                "    WHERE r.Status_rezerwacji = 'Anulowana' AND t.Data BETWEEN ? AND ? AND " + specFilter +
+                (VirtualSlots.isEnabled() ?
+                "    UNION ALL " +
+                "    SELECT g.ts::date, g.ts::time, 1, 0, 0 " +
+                "    FROM Lekarz l " +
+                "    CROSS JOIN generate_series(CAST(? AS date), CAST(? AS date), INTERVAL '1 day') AS d(dzien) " +
+                "    CROSS JOIN generate_series(d.dzien::date + l.Start_pracy, d.dzien::date + l.Koniec_pracy, INTERVAL '15 minutes') AS g(ts) " +
+                "    WHERE EXTRACT(ISODOW FROM d.dzien) < 6 AND g.ts < d.dzien::date + l.Koniec_pracy AND " + specFilter +
+                "    AND NOT EXISTS (SELECT 1 FROM Termin t WHERE t.ID_Lekarza = l.ID_Uzytkownika " +
+                "                    AND t.Data = g.ts::date AND t.Godzina = g.ts::time) " : "") +
+                ") x " +
+                "GROUP BY 1, 2";
+
+        int[][] offered = new int[HeatmapDTO.DAYS][HeatmapDTO.QUARTERS];
+        int[][] booked = new int[HeatmapDTO.DAYS][HeatmapDTO.QUARTERS];
+        int[][] cancelled = new int[HeatmapDTO.DAYS][HeatmapDTO.QUARTERS];
+
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminStatsService.getDemandHeatmap");
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (int branch = 0; branch < (VirtualSlots.isEnabled() ? 3 : 2); branch++) {
+                stmt.setDate(index++, Date.valueOf(start));
+                stmt.setDate(index++, Date.valueOf(end));
+                stmt.setInt(index++, specializationId);
+                stmt.setInt(index++, specializationId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int day = rs.getInt("Dzien");
+                    int quarter = rs.getInt("Kwadrans");
+                    offered[day][quarter] = rs.getInt("Oferowane");
+                    booked[day][quarter] = rs.getInt("Zajete");
+                    cancelled[day][quarter] = rs.getInt("Anulowane");
+                }
+            }
+        }
+        return new HeatmapDTO(start, end, specializationId, offered, booked, cancelled);
+    }
+
+    /**
+     * Przelicza Statystyka_dzienna od zera z Rezerwacja/Termin (naprawa po ręcznych zmianach z wyłączonymi
+     * wyzwalaczami itp.). Zapisy rezerwacji czekają do końca przebudowy; zwraca liczbę wierszy podsumowania.
+     */
+    public int rebuildRollup() throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminStatsService.rebuildRollup")) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Blokuje INSERT/UPDATE/DELETE na Rezerwacja i scalanie, odczyty idą dalej
+                stmt.execute("LOCK TABLE Rezerwacja IN SHARE ROW EXCLUSIVE MODE");
+                stmt.execute("LOCK TABLE Statystyka_dzienna IN SHARE ROW EXCLUSIVE MODE");
+                stmt.execute("DELETE FROM Statystyka_dzienna_zmiany");
+                stmt.execute("DELETE FROM Statystyka_dzienna");
+                int rows = stmt.executeUpdate(ROLLUP_FROM_RESERVATIONS);
+                conn.commit();
+                StatsCache.invalidateAll();
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Przenosi zmiany dopisane przez wyzwalacze do Statystyka_dzienna (suma na dzień, lekarza i status).
+     * Sumy widziane przez {@link #getDailyStats} się nie zmieniają, więc cache zostaje; rezerwacje nie czekają,
+     * bo wyzwalacze piszą tylko do tabeli zmian. Zwraca liczbę przeniesionych wierszy zmian.
+     */
+    public int compactRollup() throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection("AdminStatsService.compactRollup")) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Jedno scalanie naraz (także z innych węzłów) i nie w trakcie przebudowy
+                stmt.execute("LOCK TABLE Statystyka_dzienna IN SHARE ROW EXCLUSIVE MODE");
+                int moved = 0;
+                try (ResultSet rs = stmt.executeQuery(
+                        "WITH przeniesione AS (DELETE FROM Statystyka_dzienna_zmiany RETURNING *), " +
+                        "zapisane AS ( " +
+                        "    INSERT INTO Statystyka_dzienna (Data, ID_Lekarza, Status_rezerwacji, Liczba) " +
+                        "    SELECT Data, ID_Lekarza, Status_rezerwacji, SUM(Liczba) FROM przeniesione " +
+                        "    GROUP BY 1, 2, 3 " +
+                        "    ON CONFLICT (Data, ID_Lekarza, Status_rezerwacji) " +
+                        "        DO UPDATE SET Liczba = Statystyka_dzienna.Liczba + EXCLUDED.Liczba) " +
+                        "SELECT COUNT(*) FROM przeniesione")) {
+                    if (rs.next()) moved = rs.getInt(1);
                 }
+                conn.commit();
+                return moved;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return stats;
     }
-}
\ No newline at end of file
+
+    private static List<DailyStatsDTO> fillDays(LocalDate start, LocalDate end, List<DailyStatsDTO> rows) {
+        Map<LocalDate, DailyStatsDTO> days = new LinkedHashMap<>();
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            days.put(day, DailyStatsDTO.empty(day));
+        }
+        for (DailyStatsDTO row : rows) {
+            days.put(row.getData(), row);
+        }
+        return new ArrayList<>(days.values());
+    }
+}
@@ -1,23 +1,11 @@
 package com.example.services;
 
+import com.example.security.PasswordHasher;
 import com.example.security.UserSession;
-import org.mindrot.jbcrypt.BCrypt;
 import java.sql.*;
 
 public class AuthService {
 
-    private static final String URL = System.getenv("DB_URL") != null
-            ? System.getenv("DB_URL")
-            : "jdbc:postgresql://localhost:5432/przychodnia_db";
-
-    private static final String USER = System.getenv("DB_USERNAME") != null
-            ? System.getenv("DB_USERNAME")
-            : "postgres";
-
-    private static final String PASS = System.getenv("DB_PASSWORD") != null
-            ? System.getenv("DB_PASSWORD")
-            : "1234";
-
     public static class ValidationException extends Exception {
         public ValidationException(String message) { super(message); }
     }
@@ -25,15 +13,15 @@ public class AuthService {
     public void registerUser(String imie, String nazwisko, String pesel, String adres,
                              String login, String password, String telefon, String email) throws Exception {
 
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASS)) {
+        String hashedPassword = PasswordHasher.hash(password);
+
+        try (Connection conn = DatabaseConnectionService.getConnection("AuthService.registerUser")) {
 
             checkUniqueness(conn, login, email, telefon, pesel);
 
             conn.setAutoCommit(false);
 
             try {
-                String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-
                 String sqlUzytkownik = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Numer_telefonu, Email, Rola, Czy_aktywny) " +
                         "VALUES (?, ?, ?, ?, ?, ?, 'Pacjent', TRUE)";
 
@@ -87,35 +75,40 @@ public class AuthService {
     public UserSession login(String loginInput, String passwordInput) throws ValidationException, Exception {
         String sql = "SELECT ID_Uzytkownika, Imie, Nazwisko, Haslo, Rola, Czy_aktywny FROM Uzytkownik WHERE Login = ?";
 
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+        UserSession candidate;
+        String dbHash;
+        boolean isActive;
+        try (Connection conn = DatabaseConnectionService.getConnection("AuthService.login");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, loginInput);
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    String dbHash = rs.getString("Haslo");
-                    boolean isActive = rs.getBoolean("Czy_aktywny");
-
-                    if (BCrypt.checkpw(passwordInput, dbHash)) {
-
-                        if (!isActive) {
-                            throw new ValidationException("Twoje konto jest zablokowane lub nieaktywne. Skontaktuj się z placówką.");
-                        }
-
-                        return new UserSession(
-                                rs.getInt("ID_Uzytkownika"),
-                                rs.getString("Imie"),
-                                rs.getString("Nazwisko"),
-                                rs.getString("Rola")
-                        );
-                    }
-                }
+                if (!rs.next()) return null;
+
+                dbHash = rs.getString("Haslo");
+                isActive = rs.getBoolean("Czy_aktywny");
+                candidate = new UserSession(
+                        rs.getInt("ID_Uzytkownika"),
+                        rs.getString("Imie"),
+                        rs.getString("Nazwisko"),
+                        rs.getString("Rola")
+                );
             }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new Exception("Błąd systemu logowania.");
         }
+
+        // Sprawdzenie hasła już po oddaniu połączenia do puli
+        if (PasswordHasher.verify(passwordInput, dbHash)) {
+
+            if (!isActive) {
+                throw new ValidationException("Twoje konto jest zablokowane lub nieaktywne. Skontaktuj się z placówką.");
+            }
+
+            return candidate;
+        }
         return null;
     }
 
@@ -0,0 +1,293 @@
+package com.example.services;
+
+import com.example.data.AvailabilityStatsDTO;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dostępność lekarzy w pamięci: na każdy dzień lekarza 96 bitów (kwadranse doby) - które sloty
+ * są w grafiku i które z nich są wolne. Budowany i uzgadniany z bazą przez {@link AvailabilityIndexJob},
+ * na bieżąco poprawiany po rezerwacji, przełożeniu i anulowaniu. Dzień poza oknem indeksu albo lekarz,
+ * którego godziny nie trzymają się siatki 15 minut, nie jest pokryty - wtedy odpowiada baza.
+ * Wolny slot z indeksu jest tylko podpowiedzią: o zajęciu terminu zawsze rozstrzyga claimSlot w transakcji.
+ */
+public class AvailabilityIndex {
+
+    private static final int SLOT_MINUTES = 15;
+
+    private record Key(int doctorId, LocalDate date) {}
+
+    /** Bity 0-63 w {@code *Low}, 64-95 w {@code *High}; {@code stamp} - numer ostatniej zmiany lokalnej. */
+    private record Day(long offeredLow, long offeredHigh, long freeLow, long freeHigh, long stamp) {
+
+        boolean sameBits(Day other) {
+            return offeredLow == other.offeredLow && offeredHigh == other.offeredHigh
+                    && freeLow == other.freeLow && freeHigh == other.freeHigh;
+        }
+
+        Day taken(int slot, long stamp) {
+            return slot < 64
+                    ? new Day(offeredLow, offeredHigh, freeLow & ~(1L << slot), freeHigh, stamp)
+                    : new Day(offeredLow, offeredHigh, freeLow, freeHigh & ~(1L << (slot - 64)), stamp);
+        }
+
+        Day released(int slot, long stamp) {
+            return slot < 64
+                    ? new Day(offeredLow, offeredHigh, freeLow | (offeredLow & (1L << slot)), freeHigh, stamp)
+                    : new Day(offeredLow, offeredHigh, freeLow, freeHigh | (offeredHigh & (1L << (slot - 64))), stamp);
+        }
+    }
+
+    private record Coverage(LocalDate from, LocalDate to, Set<Integer> doctors) {
+        boolean covers(int doctorId, LocalDate date) {
+            return !date.isBefore(from) && !date.isAfter(to) && doctors.contains(doctorId);
+        }
+    }
+
+    private static final Map<Key, Day> DAYS = new ConcurrentHashMap<>();
+    private static volatile Coverage coverage;
+
+    // Zmiany lokalne nowsze niż początek uzgadniania wygrywają z (starszym) odczytem z bazy
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private static final LongAdder INDEX_LOOKUPS = new LongAdder();
+    private static final LongAdder DATABASE_LOOKUPS = new LongAdder();
+    private static final LongAdder DRIFT = new LongAdder();
+    private static volatile long lastReconcileNanos;
+
+    /** Wolne godziny lekarza w dniu, rosnąco; {@code null}, gdy dzień nie jest pokryty indeksem. */
+    public static List<LocalTime> freeSlots(int doctorId, LocalDate date) {
+        Coverage current = coverage;
+        if (current == null || !current.covers(doctorId, date)) {
+            DATABASE_LOOKUPS.increment();
+            return null;
+        }
+        INDEX_LOOKUPS.increment();
+
+        List<LocalTime> free = new ArrayList<>();
+        Day day = DAYS.get(new Key(doctorId, date));
+        if (day != null) {
+            addTimes(free, day.freeLow(), 0);
+            addTimes(free, day.freeHigh(), 64);
+        }
+        return free;
+    }
+
+    /** Wołać po zatwierdzeniu transakcji, która zajęła termin. */
+    static void markTaken(int doctorId, LocalDate date, LocalTime time) {
+        update(doctorId, date, time, true);
+    }
+
+    /** Wołać po zatwierdzeniu transakcji, która zwolniła termin (anulowanie, przełożenie). */
+    static void markReleased(int doctorId, LocalDate date, LocalTime time) {
+        update(doctorId, date, time, false);
+    }
+
+    private static void update(int doctorId, LocalDate date, LocalTime time, boolean taken) {
+        Coverage current = coverage;
+        int slot = slotOf(time);
+        if (current == null || slot < 0 || !current.covers(doctorId, date)) return;
+
+        DAYS.compute(new Key(doctorId, date), (key, day) -> {
+            long stamp = SEQUENCE.incrementAndGet();
+            Day base = day != null ? day : new Day(0, 0, 0, 0, stamp);
+            return taken ? base.taken(slot, stamp) : base.released(slot, stamp);
+        });
+    }
+
+    /**
+     * Porównuje indeks z bazą dla dni {@code today .. today + days} i nadpisuje różnice.
+     * Dni zmienione lokalnie w trakcie odczytu zostają (baza mogła ich jeszcze nie widzieć).
+     * Zwraca liczbę dni, w których indeks rozjechał się z bazą (zmiany z innych instancji, ręczny SQL).
+     */
+    public static synchronized int reconcile(int days) throws SQLException {
+        long started = System.nanoTime();
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(days);
+
+        long startSequence = SEQUENCE.get();
+        Snapshot snapshot = load(null, from, to);
+        boolean initial = coverage == null;
+        int drift = merge(snapshot, startSequence, !initial);
+
+        coverage = new Coverage(from, to, Set.copyOf(snapshot.doctors()));
+        DAYS.keySet().removeIf(key -> !coverage.covers(key.doctorId(), key.date()));
+
+        lastReconcileNanos = System.nanoTime() - started;
+        if (!initial) DRIFT.add(drift);
+        return drift;
+    }
+
+    /** Przeładowanie jednego lekarza po zmianie godzin pracy lub rejestracji; błąd wyłącza go z indeksu. */
+    static synchronized void reloadDoctor(int doctorId) {
+        Coverage current = coverage;
+        if (current == null) return;
+
+        Set<Integer> doctors = new HashSet<>(current.doctors());
+        try {
+            long startSequence = SEQUENCE.get();
+            Snapshot snapshot = load(doctorId, current.from(), current.to());
+            merge(snapshot, startSequence, false);
+            if (snapshot.doctors().contains(doctorId)) doctors.add(doctorId);
+            else doctors.remove(doctorId);
+        } catch (SQLException e) {
+            doctors.remove(doctorId);
+            System.err.println("!!! [DOSTEPNOSC] Nie udało się przeładować lekarza " + doctorId + ": " + e.getMessage());
+        }
+        coverage = new Coverage(current.from(), current.to(), Set.copyOf(doctors));
+    }
+
+    public static AvailabilityStatsDTO getStats() {
+        Coverage current = coverage;
+        return new AvailabilityStatsDTO(
+                current != null ? current.doctors().size() : 0,
+                DAYS.size(),
+                INDEX_LOOKUPS.sum(),
+                DATABASE_LOOKUPS.sum(),
+                DRIFT.sum(),
+                lastReconcileNanos / 1e6
+        );
+    }
+
+    private static int merge(Snapshot snapshot, long startSequence, boolean countDrift) {
+        int[] drift = {0};
+        Set<Key> keys = new HashSet<>(snapshot.days().keySet());
+        DAYS.keySet().stream()
+                .filter(key -> snapshot.doctors().contains(key.doctorId()) || snapshot.scope() != null && key.doctorId() == snapshot.scope())
+                .forEach(keys::add);
+
+        for (Key key : keys) {
+            long[] bits = snapshot.days().get(key);
+            Day fresh = bits == null ? null : new Day(bits[0], bits[1], bits[0] & ~bits[2], bits[1] & ~bits[3], 0);
+            DAYS.compute(key, (k, day) -> {
+                if (day != null && day.stamp() > startSequence) return day;
+                if (countDrift && day != null && (fresh == null ? day.freeLow() != 0 || day.freeHigh() != 0 : !day.sameBits(fresh))) {
+                    drift[0]++;
+                }
+                return fresh;
+            });
+        }
+        return drift[0];
+    }
+
+    /** Bity dni z bazy: [offeredLow, offeredHigh, takenLow, takenHigh]; {@code doctors} - lekarze dający się zindeksować. */
+    private record Snapshot(Integer scope, Map<Key, long[]> days, Set<Integer> doctors) {}
+
+    private record Hours(LocalTime start, LocalTime end) {}
+
+    private static Snapshot load(Integer doctorId, LocalDate from, LocalDate to) throws SQLException {
+        String doctorFilter = doctorId != null ? " WHERE ID_Uzytkownika = ?" : "";
+        String slotFilter = doctorId != null ? " AND t.ID_Lekarza = ?" : "";
+        // Kilka wierszy Termin na tę samą godzinę: wolne tylko, gdy żaden nie jest zajęty
+        String slotsSql = "SELECT t.ID_Lekarza, t.Data, t.Godzina, " +
+                "       bool_or(EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.ID_Terminu = t.ID_Terminu " +
+                "                       AND r.Status_rezerwacji != 'Anulowana')) AS zajety " +
+                "FROM Termin t " +
+                "WHERE t.Data BETWEEN ? AND ?" + slotFilter + " " +
+                "GROUP BY t.ID_Lekarza, t.Data, t.Godzina";
+
+        Map<Integer, Hours> hours = new HashMap<>();
+        Set<Integer> unaligned = new HashSet<>();
+        Map<Key, long[]> days = new HashMap<>();
+
+        try (Connection conn = DatabaseConnectionService.getConnection("AvailabilityIndex.load")) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT ID_Uzytkownika, Start_pracy, Koniec_pracy FROM Lekarz" + doctorFilter)) {
+                if (doctorId != null) stmt.setInt(1, doctorId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Time start = rs.getTime("Start_pracy");
+                        Time end = rs.getTime("Koniec_pracy");
+                        Hours doctorHours = new Hours(start != null ? start.toLocalTime() : null, end != null ? end.toLocalTime() : null);
+                        hours.put(rs.getInt("ID_Uzytkownika"), doctorHours);
+                        if (VirtualSlots.isEnabled() && doctorHours.start() != null && slotOf(doctorHours.start()) < 0) {
+                            unaligned.add(rs.getInt("ID_Uzytkownika"));
+                        }
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(slotsSql)) {
+                stmt.setDate(1, Date.valueOf(from));
+                stmt.setDate(2, Date.valueOf(to));
+                if (doctorId != null) stmt.setInt(3, doctorId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int doctor = rs.getInt("ID_Lekarza");
+                        LocalTime time = rs.getTime("Godzina").toLocalTime();
+                        Hours doctorHours = hours.get(doctor);
+                        int slot = slotOf(time);
+                        if (doctorHours == null) continue;
+                        if (slot < 0) {
+                            unaligned.add(doctor);
+                            continue;
+                        }
+                        long[] bits = days.computeIfAbsent(new Key(doctor, rs.getDate("Data").toLocalDate()), k -> new long[4]);
+                        // Tak jak w grafiku: wolny slot poza godzinami pracy nie jest oferowany
+                        if (withinHours(doctorHours, time)) set(bits, 0, slot);
+                        if (rs.getBoolean("zajety")) set(bits, 2, slot);
+                    }
+                }
+            }
+        }
+
+        if (VirtualSlots.isEnabled()) {
+            // Sloty z godzin pracy w dni robocze istnieją, zanim powstanie dla nich wiersz Termin
+            hours.forEach((doctor, doctorHours) -> {
+                if (doctorHours.start() == null || doctorHours.end() == null || unaligned.contains(doctor)) return;
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) continue;
+                    long[] bits = days.computeIfAbsent(new Key(doctor, date), k -> new long[4]);
+                    for (LocalTime time = doctorHours.start(); time.isBefore(doctorHours.end());
+                         time = time.plusMinutes(SLOT_MINUTES)) {
+                        set(bits, 0, slotOf(time));
+                        if (time.plusMinutes(SLOT_MINUTES).isBefore(time)) break;
+                    }
+                }
+            });
+        }
+
+        Set<Integer> doctors = new HashSet<>(hours.keySet());
+        doctors.removeAll(unaligned);
+        days.keySet().removeIf(key -> unaligned.contains(key.doctorId()));
+        return new Snapshot(doctorId, days, doctors);
+    }
+
+    private static boolean withinHours(Hours hours, LocalTime time) {
+        return (hours.start() == null || !time.isBefore(hours.start()))
+                && (hours.end() == null || time.isBefore(hours.end()));
+    }
+
+    private static int slotOf(LocalTime time) {
+        if (time.getSecond() != 0 || time.getNano() != 0 || time.getMinute() % SLOT_MINUTES != 0) return -1;
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    private static void set(long[] bits, int offset, int slot) {
+        bits[offset + slot / 64] |= 1L << (slot % 64);
+    }
+
+    private static void addTimes(List<LocalTime> times, long bits, int firstSlot) {
+        while (bits != 0) {
+            int slot = firstSlot + Long.numberOfTrailingZeros(bits);
+            times.add(LocalTime.MIN.plusMinutes((long) slot * SLOT_MINUTES));
+            bits &= bits - 1;
+        }
+    }
+}
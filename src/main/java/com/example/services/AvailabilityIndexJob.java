@@ -0,0 +1,32 @@
+package com.example.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+@Component
+public class AvailabilityIndexJob {
+
+    private final int days;
+
+    public AvailabilityIndexJob(@Value("${przychodnia.availability.days:90}") int days) {
+        this.days = days;
+    }
+
+    /** Pierwsze wywołanie buduje indeks, kolejne wyrównują go z bazą i przesuwają okno na bieżący dzień. */
+    @Scheduled(initialDelayString = "${przychodnia.availability.initial-delay-ms:5000}",
+            fixedDelayString = "${przychodnia.availability.interval-ms:300000}")
+    public void run() {
+        try {
+            int drift = AvailabilityIndex.reconcile(days);
+            if (drift > 0) {
+                System.err.println("!!! [DOSTEPNOSC] Indeks rozjechał się z bazą w " + drift + " dniach - poprawiono.");
+            }
+            System.out.println(">>> [DOSTEPNOSC] " + AvailabilityIndex.getStats());
+        } catch (SQLException e) {
+            System.err.println("!!! [DOSTEPNOSC] Błąd uzgadniania indeksu: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,20 @@
 package com.example.services;
 
+import com.example.data.PoolStatsDTO;
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.QueryMetrics;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DatabaseConnectionService {
     private static final String URL = System.getenv("DB_URL") != null
@@ -17,7 +29,122 @@ public class DatabaseConnectionService {
             ? System.getenv("DB_PASSWORD")
             : "1234";
 
+    private static final int POOL_MIN_IDLE = envInt("DB_POOL_MIN_IDLE", 2);
+    private static final int POOL_MAX_SIZE = envInt("DB_POOL_MAX_SIZE", 10);
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = envLong("DB_POOL_ACQUIRE_TIMEOUT_MS", 5_000);
+    private static final long POOL_VALIDATION_TIMEOUT_MS = envLong("DB_POOL_VALIDATION_TIMEOUT_MS", 2_000);
+    private static final long POOL_IDLE_TIMEOUT_MS = envLong("DB_POOL_IDLE_TIMEOUT_MS", 600_000);
+    private static final long POOL_MAX_LIFETIME_MS = envLong("DB_POOL_MAX_LIFETIME_MS", 1_800_000);
+    private static final long POOL_KEEPALIVE_MS = envLong("DB_POOL_KEEPALIVE_MS", 120_000);
+    private static final long POOL_LEAK_DETECTION_MS = envLong("DB_POOL_LEAK_DETECTION_MS", 0);
+    private static final String POOL_TEST_QUERY = System.getenv("DB_POOL_TEST_QUERY");
+
+    private static final LatencyHistogram ACQUIRE_TIME = new LatencyHistogram();
+    private static final LongAdder ACQUIRE_TIMEOUTS = new LongAdder();
+
+    private static final HikariDataSource DATA_SOURCE = createDataSource();
+
     public static Connection getConnection() throws SQLException {
+        return DATA_SOURCE.getConnection();
+    }
+
+    /**
+     * Połączenie mierzone jako zapytanie {@code queryName} (czas, wiersze, błędy) - patrz {@link QueryMetrics}.
+     */
+    public static Connection getConnection(String queryName) throws SQLException {
+        long started = System.nanoTime();
+        try {
+            return QueryMetrics.instrument(queryName, DATA_SOURCE.getConnection());
+        } catch (SQLException e) {
+            QueryMetrics.recordFailure(queryName, System.nanoTime() - started);
+            throw e;
+        }
+    }
+
+    /**
+     * Osobne połączenie spoza puli dla długo żyjących sesji (LISTEN) - nie zajmuje miejsca
+     * w puli i nie podlega jej maxLifetime. Zamknięcie należy do wołającego.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
         return DriverManager.getConnection(URL, USER, PASSWORD);
     }
-}
\ No newline at end of file
+
+    public static DataSource getDataSource() {
+        return DATA_SOURCE;
+    }
+
+    public static LatencyHistogram.Snapshot getAcquireTime() {
+        return ACQUIRE_TIME.snapshot();
+    }
+
+    public static PoolStatsDTO getPoolStats() {
+        HikariPoolMXBean pool = DATA_SOURCE.getHikariPoolMXBean();
+        LatencyHistogram.Snapshot acquire = ACQUIRE_TIME.snapshot();
+        return new PoolStatsDTO(
+                pool != null ? pool.getActiveConnections() : 0,
+                pool != null ? pool.getIdleConnections() : 0,
+                pool != null ? pool.getTotalConnections() : 0,
+                pool != null ? pool.getThreadsAwaitingConnection() : 0,
+                DATA_SOURCE.getMaximumPoolSize(),
+                acquire.getCount(),
+                ACQUIRE_TIMEOUTS.sum(),
+                acquire.getP50Millis(),
+                acquire.getP95Millis(),
+                acquire.getP99Millis(),
+                acquire.getMaxMillis()
+        );
+    }
+
+    private static HikariDataSource createDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("przychodnia");
+        config.setJdbcUrl(URL);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.setMinimumIdle(POOL_MIN_IDLE);
+        config.setMaximumPoolSize(POOL_MAX_SIZE);
+        config.setConnectionTimeout(POOL_ACQUIRE_TIMEOUT_MS);
+        config.setValidationTimeout(POOL_VALIDATION_TIMEOUT_MS);
+        config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+        config.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+        config.setKeepaliveTime(POOL_KEEPALIVE_MS);
+        config.setLeakDetectionThreshold(POOL_LEAK_DETECTION_MS);
+        if (POOL_TEST_QUERY != null && !POOL_TEST_QUERY.isBlank()) {
+            config.setConnectionTestQuery(POOL_TEST_QUERY);
+        }
+        // Brak bazy przy starcie nie może zablokować klasy - błąd pojawi się dopiero przy getConnection()
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new AcquireTimeTrackerFactory());
+
+        HikariDataSource dataSource = new HikariDataSource(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(dataSource::close, "db-pool-shutdown"));
+        return dataSource;
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private static long envLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    private static class AcquireTimeTrackerFactory implements MetricsTrackerFactory {
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    ACQUIRE_TIME.record(elapsedAcquiredNanos);
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    ACQUIRE_TIMEOUTS.increment();
+                }
+            };
+        }
+    }
+}
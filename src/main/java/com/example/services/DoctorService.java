@@ -23,16 +23,35 @@ public class DoctorService {
             ORDER BY t.Godzina
         """;
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        // W trybie wirtualnym wolne sloty wylicza baza z godzin pracy, bez wierszy w Termin
+        String virtualQuery = VirtualSlots.SLOTS_CTE + """
+            SELECT COALESCE(t.ID_Terminu, 0) AS ID_Terminu, s.Data, s.Godzina,
+                   r.ID_Rezerwacji, r.Status_rezerwacji,
+                   p.ID_Uzytkownika, u.Imie, u.Nazwisko
+            FROM sloty s
+            LEFT JOIN Termin t ON t.ID_Lekarza = ? AND t.Data = s.Data AND t.Godzina = s.Godzina
+            LEFT JOIN Rezerwacja r ON t.ID_Terminu = r.ID_Terminu
+            LEFT JOIN Pacjent p ON r.ID_Pacjenta = p.ID_Uzytkownika
+            LEFT JOIN Uzytkownik u ON p.ID_Uzytkownika = u.ID_Uzytkownika
+            ORDER BY s.Godzina
+        """;
 
-            stmt.setInt(1, doctorId);
-            stmt.setDate(2, Date.valueOf(date));
+        try (Connection conn = DatabaseConnectionService.getConnection("DoctorService.getSchedule");
+             PreparedStatement stmt = conn.prepareStatement(VirtualSlots.isEnabled() ? virtualQuery : query)) {
+
+            if (VirtualSlots.isEnabled()) {
+                int i = VirtualSlots.bindSlots(stmt, 1, doctorId, date, date);
+                stmt.setInt(i, doctorId);
+            } else {
+                stmt.setInt(1, doctorId);
+                stmt.setDate(2, Date.valueOf(date));
+            }
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     HarmonogramDTO dto = new HarmonogramDTO();
                     dto.setIdTerminu(rs.getInt("ID_Terminu"));
+                    dto.setIdLekarza(doctorId);
                     dto.setData(rs.getDate("Data").toLocalDate());
                     dto.setGodzina(rs.getTime("Godzina").toLocalTime());
 
@@ -69,7 +88,7 @@ public class DoctorService {
             WHERE t.ID_Terminu = ?
         """;
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("DoctorService.getVisitDetails");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, terminId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -104,13 +123,16 @@ public class DoctorService {
             SET Notatka = ?
             FROM Rezerwacja r
             WHERE w.ID_Rezerwacji = r.ID_Rezerwacji AND r.ID_Terminu = ?
+              AND r.Status_rezerwacji != 'Anulowana'
         """;
 
-        String updateStatus = "UPDATE Rezerwacja SET Status_rezerwacji = ? WHERE ID_Terminu = ?";
+        String updateStatus = "UPDATE Rezerwacja r SET Status_rezerwacji = ? FROM Termin t " +
+                "WHERE t.ID_Terminu = r.ID_Terminu AND r.ID_Terminu = ? AND r.Status_rezerwacji != 'Anulowana' " +
+                "RETURNING t.ID_Lekarza, t.Data, t.Godzina, r.ID_Pacjenta";
 
         Connection conn = null;
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("DoctorService.completeVisit");
             conn.setAutoCommit(false);
 
             // Zapis notatki
@@ -121,13 +143,25 @@ public class DoctorService {
             }
 
             // Zmiana statusu
+            List<ScheduleChange> changes = new ArrayList<>();
             try (PreparedStatement stmt = conn.prepareStatement(updateStatus)) {
                 stmt.setString(1, status);
                 stmt.setInt(2, terminId);
-                stmt.executeUpdate();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        changes.add(ScheduleChange.reservation(rs.getInt("ID_Lekarza"), rs.getDate("Data").toLocalDate(),
+                                rs.getTime("Godzina").toLocalTime(), terminId, rs.getInt("ID_Pacjenta"), status));
+                    }
+                }
+            }
+            for (ScheduleChange change : changes) {
+                ScheduleChanges.publish(conn, change);
             }
 
             conn.commit();
+            for (ScheduleChange change : changes) {
+                StatsCache.invalidate(change.date());
+            }
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw e;
@@ -153,7 +187,7 @@ public class DoctorService {
             ORDER BY t.Data DESC
         """;
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("DoctorService.getPatientHistory");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, patientId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -0,0 +1,173 @@
+package com.example.services;
+
+import com.example.data.HarmonogramDTO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Kolejka rezerwacji czekających na rejestrację, wspólna dla wszystkich pulpitów rejestracji na węźle.
+ * Pełne zapytanie idzie raz (przy pierwszym subskrybencie), potem każda zmiana rezerwacji
+ * z {@link ScheduleChanges} to co najwyżej jedno zapytanie o pojedynczy termin - a widoki dostają
+ * tylko różnice ({@link Delta}), zamiast każdy z osobna przeładowywać całą listę.
+ */
+public class PendingQueue {
+
+    public static final String PENDING_STATUS = "Wymaga potwierdzenia przez rejestracje";
+
+    /** Kolejność wyświetlania: data, godzina. */
+    public static final Comparator<HarmonogramDTO> ORDER =
+            Comparator.comparing(HarmonogramDTO::getData).thenComparing(HarmonogramDTO::getGodzina);
+
+    /** Zmiana jednej pozycji kolejki; {@code item == null} oznacza usunięcie. */
+    public record Delta(int terminId, HarmonogramDTO item) {
+        public boolean removed() {
+            return item == null;
+        }
+    }
+
+    /** Stan kolejki w chwili subskrypcji i zadanie ją kończące (np. w onDetach widoku). */
+    public record Subscription(List<HarmonogramDTO> snapshot, Runnable cancel) {}
+
+    private static final ReceptionService RECEPTION = new ReceptionService();
+    private static final Object LOCK = new Object();
+    private static final List<Consumer<Delta>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+    private static final LongAdder DELTAS = new LongAdder();
+    private static final LongAdder POINT_QUERIES = new LongAdder();
+
+    // null, dopóki nikt nie patrzy - wtedy zmiany są pomijane, a stan wczytuje się od nowa
+    private static Map<Integer, HarmonogramDTO> items;
+
+    static {
+        ScheduleChanges.subscribe(PendingQueue::onChange);
+    }
+
+    public static Subscription subscribe(Consumer<Delta> subscriber) throws SQLException {
+        synchronized (LOCK) {
+            if (items == null) {
+                items = index(RECEPTION.getPendingReservations());
+            }
+            SUBSCRIBERS.add(subscriber);
+            return new Subscription(sorted(items), () -> unsubscribe(subscriber));
+        }
+    }
+
+    public static int size() {
+        synchronized (LOCK) {
+            return items != null ? items.size() : 0;
+        }
+    }
+
+    public static int getSubscribers() {
+        return SUBSCRIBERS.size();
+    }
+
+    public static long getDeltas() {
+        return DELTAS.sum();
+    }
+
+    public static long getPointQueries() {
+        return POINT_QUERIES.sum();
+    }
+
+    private static void unsubscribe(Consumer<Delta> subscriber) {
+        synchronized (LOCK) {
+            SUBSCRIBERS.remove(subscriber);
+            if (SUBSCRIBERS.isEmpty()) {
+                items = null;
+            }
+        }
+    }
+
+    private static void onChange(ScheduleChange change) {
+        if (!change.concernsReservations()) return;
+        try {
+            synchronized (LOCK) {
+                if (items == null) return;
+                if (change.kind() == ScheduleChange.Kind.WSZYSTKO) {
+                    reload();
+                } else if (PENDING_STATUS.equals(change.status())) {
+                    POINT_QUERIES.increment();
+                    HarmonogramDTO item = RECEPTION.getPendingReservation(change.terminId());
+                    if (item != null) {
+                        items.put(item.getIdTerminu(), item);
+                        publish(new Delta(item.getIdTerminu(), item));
+                    } else {
+                        remove(change.terminId());
+                    }
+                } else {
+                    remove(change.terminId());
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("!!! [KOLEJKA] Nie udało się odświeżyć kolejki rejestracji: " + e.getMessage());
+        }
+    }
+
+    // Po zerwanym nasłuchu: pełne zapytanie i różnice względem tego, co widoki już mają -
+    // niezmienione pozycje nie idą do widoków (każda delta to usunięcie i wstawienie w każdej siatce)
+    private static void reload() throws SQLException {
+        Map<Integer, HarmonogramDTO> fresh = index(RECEPTION.getPendingReservations());
+        for (Integer terminId : new ArrayList<>(items.keySet())) {
+            if (!fresh.containsKey(terminId)) {
+                remove(terminId);
+            }
+        }
+        for (HarmonogramDTO item : fresh.values()) {
+            HarmonogramDTO previous = items.put(item.getIdTerminu(), item);
+            if (previous == null || !sameRow(previous, item)) {
+                publish(new Delta(item.getIdTerminu(), item));
+            }
+        }
+    }
+
+    /** Te same dane wiersza listy: rezerwacja, status, czas, pacjent i lekarz. */
+    private static boolean sameRow(HarmonogramDTO a, HarmonogramDTO b) {
+        return a.getIdRezerwacji() == b.getIdRezerwacji()
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getData(), b.getData())
+                && Objects.equals(a.getGodzina(), b.getGodzina())
+                && Objects.equals(a.getImiePacjenta(), b.getImiePacjenta())
+                && Objects.equals(a.getNazwiskoPacjenta(), b.getNazwiskoPacjenta())
+                && Objects.equals(a.getLekarz(), b.getLekarz());
+    }
+
+    private static void remove(int terminId) {
+        if (items.remove(terminId) != null) {
+            publish(new Delta(terminId, null));
+        }
+    }
+
+    private static void publish(Delta delta) {
+        DELTAS.increment();
+        for (Consumer<Delta> subscriber : SUBSCRIBERS) {
+            try {
+                subscriber.accept(delta);
+            } catch (RuntimeException e) {
+                System.err.println("!!! [KOLEJKA] Błąd odbiorcy zmiany: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Map<Integer, HarmonogramDTO> index(List<HarmonogramDTO> list) {
+        Map<Integer, HarmonogramDTO> map = new HashMap<>();
+        for (HarmonogramDTO item : list) {
+            map.put(item.getIdTerminu(), item);
+        }
+        return map;
+    }
+
+    private static List<HarmonogramDTO> sorted(Map<Integer, HarmonogramDTO> map) {
+        List<HarmonogramDTO> list = new ArrayList<>(map.values());
+        list.sort(ORDER);
+        return list;
+    }
+}
@@ -3,24 +3,42 @@ package com.example.services;
 import com.example.data.BookingResult;
 import com.example.data.HarmonogramDTO;
 import com.example.data.UserDTO;
+import com.example.security.PasswordHasher;
 import com.example.security.UserValidator;
-import org.mindrot.jbcrypt.BCrypt;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ReceptionService {
 
+    private static final String SCHEDULE_JOINS =
+            "LEFT JOIN Rezerwacja r ON t.id_terminu = r.id_terminu AND r.status_rezerwacji != 'Anulowana' " +
+                    "LEFT JOIN Pacjent p ON r.id_pacjenta = p.id_uzytkownika " +
+                    "LEFT JOIN Uzytkownik u ON p.id_uzytkownika = u.id_uzytkownika " +
+                    "LEFT JOIN Wizyta w ON r.id_rezerwacji = w.id_rezerwacji ";
+
+    private static final String SLOT_TAKEN_MESSAGE = "Wybrany termin jest już zajęty! Odśwież widok.";
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // Jak daleko w przód tryb wirtualny szuka wolnego terminu
+    private static final int VIRTUAL_SEARCH_DAYS = 90;
+
     public static class ValidationException extends Exception {
         public ValidationException(String message) { super(message); }
     }
 
     public List<UserDTO> getAllDoctors() throws SQLException {
+        return ReferenceDataCache.get("lekarze", () -> List.copyOf(loadAllDoctors()));
+    }
+
+    private List<UserDTO> loadAllDoctors() throws SQLException {
         List<UserDTO> doctors = new ArrayList<>();
         String query = "SELECT u.*, s.specjalizacja " +
                 "FROM Uzytkownik u " +
@@ -28,7 +46,7 @@ public class ReceptionService {
                 "LEFT JOIN Specjalizacja s ON l.id_specjalizacji = s.id_specjalizacji " +
                 "WHERE u.Rola = 'Lekarz' AND u.Czy_aktywny = true";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getAllDoctors");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
@@ -52,9 +70,13 @@ public class ReceptionService {
     }
 
     public List<String> getAllSpecializations() throws SQLException {
+        return ReferenceDataCache.get("specjalizacje", () -> List.copyOf(loadAllSpecializations()));
+    }
+
+    private List<String> loadAllSpecializations() throws SQLException {
         List<String> specs = new ArrayList<>();
         String query = "SELECT specjalizacja FROM Specjalizacja";
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getAllSpecializations");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
@@ -64,14 +86,143 @@ public class ReceptionService {
         return specs;
     }
 
+    public List<UserDTO> getDoctorsBySpecialization(String specjalizacja) throws SQLException {
+        return ReferenceDataCache.get("lekarze_specjalizacji", specjalizacja,
+                () -> List.copyOf(loadDoctorsBySpecialization(specjalizacja)));
+    }
+
+    private List<UserDTO> loadDoctorsBySpecialization(String specjalizacja) throws SQLException {
+        List<UserDTO> doctors = new ArrayList<>();
+        String query = "SELECT u.Id_uzytkownika, u.Imie, u.Nazwisko, u.Login, u.Rola, u.Email, u.Numer_telefonu, u.Czy_aktywny, s.specjalizacja " +
+                "FROM Specjalizacja s " +
+                "JOIN Lekarz l ON l.id_specjalizacji = s.id_specjalizacji " +
+                "JOIN Uzytkownik u ON u.id_uzytkownika = l.id_uzytkownika " +
+                "WHERE s.specjalizacja = ? AND u.Czy_aktywny = true " +
+                "ORDER BY u.Nazwisko, u.Imie";
+
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getDoctorsBySpecialization");
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, specjalizacja);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("Id_uzytkownika");
+                    doctors.add(new UserDTO(
+                            id,
+                            rs.getString("Imie"),
+                            rs.getString("Nazwisko"),
+                            rs.getString("Login"),
+                            rs.getString("Rola"),
+                            rs.getString("Email"),
+                            rs.getString("Numer_telefonu"),
+                            rs.getBoolean("Czy_aktywny"),
+                            id,
+                            rs.getString("specjalizacja"),
+                            null
+                    ));
+                }
+            }
+        }
+        return doctors;
+    }
+
+    /**
+     * Najbliższe {@code limit} wolnych terminów u wszystkich aktywnych lekarzy danej specjalizacji,
+     * począwszy od {@code from}, opcjonalnie tylko w oknie godzin [windowStart, windowEnd).
+     * Dla każdego lekarza baza czyta indeks (ID_Lekarza, Data, Godzina) tylko do pierwszych
+     * {@code limit} trafień, a potem scala wyniki.
+     */
+    public List<HarmonogramDTO> findFirstAvailableSlots(String specjalizacja, LocalDateTime from,
+                                                        LocalTime windowStart, LocalTime windowEnd,
+                                                        int limit) throws SQLException {
+        List<HarmonogramDTO> slots = new ArrayList<>();
+        LocalTime start = windowStart != null ? windowStart : LocalTime.MIN;
+        LocalTime end = windowEnd != null ? windowEnd : LocalTime.MAX;
+
+        String query;
+        if (VirtualSlots.isEnabled()) {
+            query = "SELECT x.id_terminu, l.id_uzytkownika AS id_lekarza, x.data, x.godzina, u.imie, u.nazwisko, s.specjalizacja " +
+                    "FROM Specjalizacja s " +
+                    "JOIN Lekarz l ON l.id_specjalizacji = s.id_specjalizacji " +
+                    "JOIN Uzytkownik u ON u.id_uzytkownika = l.id_uzytkownika " +
+                    "CROSS JOIN LATERAL ( " +
+                    "    SELECT COALESCE(t.id_terminu, 0) AS id_terminu, g.ts::date AS data, g.ts::time AS godzina " +
+                    "    FROM generate_series(CAST(? AS date), CAST(? AS date) + ?, INTERVAL '1 day') AS d(dzien) " +
+                    "    CROSS JOIN generate_series(d.dzien::date + l.Start_pracy, d.dzien::date + l.Koniec_pracy, INTERVAL '15 minutes') AS g(ts) " +
+                    "    LEFT JOIN Termin t ON t.id_lekarza = l.id_uzytkownika AND t.data = g.ts::date AND t.godzina = g.ts::time " +
+                    "    WHERE EXTRACT(ISODOW FROM d.dzien) < 6 AND g.ts < d.dzien::date + l.Koniec_pracy " +
+                    "      AND g.ts >= CAST(? AS timestamp) " +
+                    "      AND g.ts::time >= ? AND g.ts::time < ? " +
+                    "      AND NOT EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.id_terminu = t.id_terminu AND r.status_rezerwacji != 'Anulowana') " +
+                    "    ORDER BY g.ts LIMIT ? " +
+                    ") x " +
+                    "WHERE s.specjalizacja = ? AND u.Czy_aktywny = true " +
+                    "ORDER BY x.data, x.godzina, l.id_uzytkownika LIMIT ?";
+        } else {
+            query = "SELECT x.id_terminu, l.id_uzytkownika AS id_lekarza, x.data, x.godzina, u.imie, u.nazwisko, s.specjalizacja " +
+                    "FROM Specjalizacja s " +
+                    "JOIN Lekarz l ON l.id_specjalizacji = s.id_specjalizacji " +
+                    "JOIN Uzytkownik u ON u.id_uzytkownika = l.id_uzytkownika " +
+                    "CROSS JOIN LATERAL ( " +
+                    "    SELECT t.id_terminu, t.data, t.godzina " +
+                    "    FROM Termin t " +
+                    "    WHERE t.id_lekarza = l.id_uzytkownika " +
+                    "      AND (t.data, t.godzina) >= (CAST(? AS date), CAST(? AS time)) " +
+                    "      AND t.godzina >= l.Start_pracy AND t.godzina < l.Koniec_pracy " +
+                    "      AND t.godzina >= ? AND t.godzina < ? " +
+                    "      AND NOT EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.id_terminu = t.id_terminu AND r.status_rezerwacji != 'Anulowana') " +
+                    "    ORDER BY t.data, t.godzina LIMIT ? " +
+                    ") x " +
+                    "WHERE s.specjalizacja = ? AND u.Czy_aktywny = true " +
+                    "ORDER BY x.data, x.godzina, l.id_uzytkownika LIMIT ?";
+        }
+
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.findFirstAvailableSlots");
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            int i = 1;
+            if (VirtualSlots.isEnabled()) {
+                stmt.setDate(i++, Date.valueOf(from.toLocalDate()));
+                stmt.setDate(i++, Date.valueOf(from.toLocalDate()));
+                stmt.setInt(i++, VIRTUAL_SEARCH_DAYS);
+                stmt.setTimestamp(i++, Timestamp.valueOf(from));
+            } else {
+                stmt.setDate(i++, Date.valueOf(from.toLocalDate()));
+                stmt.setTime(i++, Time.valueOf(from.toLocalTime()));
+            }
+            stmt.setTime(i++, Time.valueOf(start));
+            stmt.setTime(i++, Time.valueOf(end));
+            stmt.setInt(i++, limit);
+            stmt.setString(i++, specjalizacja);
+            stmt.setInt(i, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    HarmonogramDTO dto = new HarmonogramDTO();
+                    dto.setIdTerminu(rs.getInt("id_terminu"));
+                    dto.setIdLekarza(rs.getInt("id_lekarza"));
+                    dto.setData(rs.getDate("data").toLocalDate());
+                    dto.setGodzina(rs.getTime("godzina").toLocalTime());
+                    dto.setStatus("Wolny");
+                    dto.setLekarz(rs.getString("imie") + " " + rs.getString("nazwisko") +
+                            (rs.getString("specjalizacja") != null ? " (" + rs.getString("specjalizacja") + ")" : ""));
+                    slots.add(dto);
+                }
+            }
+        }
+        return slots;
+    }
+
     public UserDTO getDoctorById(int id) throws SQLException {
+        return ReferenceDataCache.get("lekarz", id, () -> loadDoctorById(id));
+    }
+
+    private UserDTO loadDoctorById(int id) throws SQLException {
         String query = "SELECT u.*, s.specjalizacja " +
                 "FROM Uzytkownik u " +
                 "JOIN Lekarz l ON u.id_uzytkownika = l.id_uzytkownika " +
                 "LEFT JOIN Specjalizacja s ON l.id_specjalizacji = s.id_specjalizacji " +
                 "WHERE u.Id_uzytkownika = ?";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getDoctorById");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -96,153 +247,245 @@ public class ReceptionService {
     }
 
     public List<HarmonogramDTO> getScheduleForDoctor(int doctorId, LocalDate date) throws SQLException {
-        Map<Integer, HarmonogramDTO> scheduleMap = new LinkedHashMap<>();
-
-        String query =
-                "SELECT t.id_terminu, t.data, t.godzina, " +
-                        "       r.status_rezerwacji, " +
-                        "       u.imie, u.nazwisko, w.opis_powodu, " +
-                        "       w.id_rezerwacji AS wizyta_id, " +
-                        "       l.Start_pracy, l.Koniec_pracy " +
-                        "FROM Termin t " +
-                        "JOIN Lekarz l ON t.id_lekarza = l.id_uzytkownika " +
-                        "LEFT JOIN Rezerwacja r ON t.id_terminu = r.id_terminu AND r.status_rezerwacji != 'Anulowana' " +
-                        "LEFT JOIN Pacjent p ON r.id_pacjenta = p.id_uzytkownika " +
-                        "LEFT JOIN Uzytkownik u ON p.id_uzytkownika = u.id_uzytkownika " +
-                        "LEFT JOIN Wizyta w ON r.id_rezerwacji = w.id_rezerwacji " +
-                        "WHERE t.id_lekarza = ? AND t.data = ? " +
-                        "ORDER BY t.godzina";
-
-        try (Connection conn = DatabaseConnectionService.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, doctorId);
-            stmt.setDate(2, Date.valueOf(date));
+        return getScheduleForDoctor(doctorId, date, date).get(date);
+    }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    int terminId = rs.getInt("id_terminu");
-                    LocalTime termTime = rs.getTime("godzina").toLocalTime();
-                    LocalTime startWork = rs.getTime("Start_pracy") != null ? rs.getTime("Start_pracy").toLocalTime() : LocalTime.MIN;
-                    LocalTime endWork = rs.getTime("Koniec_pracy") != null ? rs.getTime("Koniec_pracy").toLocalTime() : LocalTime.MAX;
+    /**
+     * Wolne terminy lekarza w danym dniu do wyboru przy rezerwacji i przekładaniu. Odpowiada
+     * {@link AvailabilityIndex} bez zapytania do bazy; dzień spoza indeksu czyta grafik z bazy.
+     * Terminy z indeksu mają ID_Terminu = 0 - wiersz odszukuje rezerwacja (w trybie wirtualnym w razie potrzeby go tworzy).
+     */
+    public List<HarmonogramDTO> getFreeSlots(int doctorId, LocalDate date) throws SQLException {
+        List<LocalTime> times = AvailabilityIndex.freeSlots(doctorId, date);
+        if (times == null) {
+            return getScheduleForDoctor(doctorId, date).stream()
+                    .filter(slot -> "Wolny".equals(slot.getStatus()))
+                    .toList();
+        }
 
-                    String statusRezerwacji = rs.getString("status_rezerwacji");
-                    boolean wizytaIstnieje = rs.getObject("wizyta_id") != null;
-                    boolean isOutsideWorkingHours = termTime.isBefore(startWork) || !termTime.isBefore(endWork);
+        List<HarmonogramDTO> slots = new ArrayList<>(times.size());
+        for (LocalTime time : times) {
+            HarmonogramDTO dto = new HarmonogramDTO();
+            dto.setIdLekarza(doctorId);
+            dto.setData(date);
+            dto.setGodzina(time);
+            dto.setStatus("Wolny");
+            slots.add(dto);
+        }
+        return slots;
+    }
 
-                    if (isOutsideWorkingHours && !wizytaIstnieje) {
-                        continue;
-                    }
+    /**
+     * Grafik lekarza dla zakresu dat jednym zapytaniem, pogrupowany po dniach (każdy dzień zakresu
+     * jest w mapie, także pusty). Sloty poza godzinami pracy bez wizyty i duplikaty terminu
+     * odfiltrowuje baza.
+     */
+    public Map<LocalDate, List<HarmonogramDTO>> getScheduleForDoctor(int doctorId, LocalDate from, LocalDate to) throws SQLException {
+        Map<LocalDate, List<HarmonogramDTO>> schedule = new LinkedHashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            schedule.put(day, new ArrayList<>());
+        }
 
-                    String displayStatus = "Wolny";
-                    String imie = null;
-                    String nazwisko = null;
-                    String powod = null;
-                    int idRezerwacji = 0;
-
-                    if (wizytaIstnieje) {
-                        displayStatus = statusRezerwacji;
-                        imie = rs.getString("imie");
-                        nazwisko = rs.getString("nazwisko");
-                        powod = rs.getString("opis_powodu");
-                        idRezerwacji = rs.getInt("wizyta_id");
-                    }
+        String query;
+        if (VirtualSlots.isEnabled()) {
+            query = VirtualSlots.SLOTS_CTE +
+                    "SELECT * FROM ( " +
+                            "SELECT DISTINCT ON (s.data, s.godzina, t.id_terminu) " +
+                            "       COALESCE(t.id_terminu, 0) AS id_terminu, s.data, s.godzina, " +
+                            "       r.status_rezerwacji, " +
+                            "       u.imie, u.nazwisko, w.opis_powodu, " +
+                            "       w.id_rezerwacji AS wizyta_id " +
+                            "FROM sloty s " +
+                            "JOIN Lekarz l ON l.id_uzytkownika = ? " +
+                            "LEFT JOIN Termin t ON t.id_lekarza = l.id_uzytkownika AND t.data = s.data AND t.godzina = s.godzina " +
+                            SCHEDULE_JOINS +
+                            "WHERE " + withinWorkingHours("s.godzina") + " OR w.id_rezerwacji IS NOT NULL " +
+                            "ORDER BY s.data, s.godzina, t.id_terminu, (w.id_rezerwacji IS NULL) " +
+                            ") grafik ORDER BY data, godzina";
+        } else {
+            query = "SELECT * FROM ( " +
+                            "SELECT DISTINCT ON (t.id_terminu) " +
+                            "       t.id_terminu, t.data, t.godzina, " +
+                            "       r.status_rezerwacji, " +
+                            "       u.imie, u.nazwisko, w.opis_powodu, " +
+                            "       w.id_rezerwacji AS wizyta_id " +
+                            "FROM Termin t " +
+                            "JOIN Lekarz l ON t.id_lekarza = l.id_uzytkownika " +
+                            SCHEDULE_JOINS +
+                            "WHERE t.id_lekarza = ? AND t.data BETWEEN ? AND ? " +
+                            "AND (" + withinWorkingHours("t.godzina") + " OR w.id_rezerwacji IS NOT NULL) " +
+                            "ORDER BY t.id_terminu, (w.id_rezerwacji IS NULL) " +
+                            ") grafik ORDER BY data, godzina";
+        }
 
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getScheduleForDoctor");
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            if (VirtualSlots.isEnabled()) {
+                int i = VirtualSlots.bindSlots(stmt, 1, doctorId, from, to);
+                stmt.setInt(i, doctorId);
+            } else {
+                stmt.setInt(1, doctorId);
+                stmt.setDate(2, Date.valueOf(from));
+                stmt.setDate(3, Date.valueOf(to));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
                     HarmonogramDTO dto = new HarmonogramDTO();
-                    dto.setIdTerminu(terminId);
-                    dto.setStatus(displayStatus);
+                    dto.setIdTerminu(rs.getInt("id_terminu"));
+                    dto.setIdLekarza(doctorId);
                     dto.setData(rs.getDate("data").toLocalDate());
-                    dto.setGodzina(termTime);
-                    dto.setImiePacjenta(imie);
-                    dto.setNazwiskoPacjenta(nazwisko);
-                    dto.setPowodWizyty(powod);
-                    dto.setIdRezerwacji(idRezerwacji);
-
-                    if (!scheduleMap.containsKey(terminId)) {
-                        scheduleMap.put(terminId, dto);
-                    } else {
-                        if (wizytaIstnieje) {
-                            scheduleMap.put(terminId, dto);
-                        }
+                    dto.setGodzina(rs.getTime("godzina").toLocalTime());
+                    dto.setStatus("Wolny");
+
+                    if (rs.getObject("wizyta_id") != null) {
+                        dto.setStatus(rs.getString("status_rezerwacji"));
+                        dto.setImiePacjenta(rs.getString("imie"));
+                        dto.setNazwiskoPacjenta(rs.getString("nazwisko"));
+                        dto.setPowodWizyty(rs.getString("opis_powodu"));
+                        dto.setIdRezerwacji(rs.getInt("wizyta_id"));
                     }
+
+                    schedule.computeIfAbsent(dto.getData(), d -> new ArrayList<>()).add(dto);
                 }
             }
         }
-        return new ArrayList<>(scheduleMap.values());
+        return schedule;
+    }
+
+    private static String withinWorkingHours(String column) {
+        return "(" + column + " >= COALESCE(l.Start_pracy, TIME '00:00') " +
+                "AND (l.Koniec_pracy IS NULL OR " + column + " < l.Koniec_pracy))";
     }
 
+    private static final String PENDING_QUERY =
+            "SELECT r.ID_Rezerwacji, t.ID_Terminu, t.Data, t.Godzina, u_pac.Imie, u_pac.Nazwisko, " +
+                    "       u_lek.Imie AS LekarzImie, u_lek.Nazwisko AS LekarzNazwisko, s.Specjalizacja " +
+                    "FROM Rezerwacja r " +
+                    "JOIN Termin t ON r.ID_Terminu = t.ID_Terminu " +
+                    "JOIN Pacjent p ON r.ID_Pacjenta = p.ID_Uzytkownika " +
+                    "JOIN Uzytkownik u_pac ON p.ID_Uzytkownika = u_pac.ID_Uzytkownika " +
+                    "JOIN Lekarz l ON t.ID_Lekarza = l.ID_Uzytkownika " +
+                    "JOIN Uzytkownik u_lek ON l.ID_Uzytkownika = u_lek.ID_Uzytkownika " +
+                    "LEFT JOIN Specjalizacja s ON l.ID_Specjalizacji = s.ID_Specjalizacji " +
+                    "WHERE r.Status_rezerwacji = '" + PendingQueue.PENDING_STATUS + "' ";
+
     public List<HarmonogramDTO> getPendingReservations() throws SQLException {
         List<HarmonogramDTO> list = new ArrayList<>();
-        String query =
-                "SELECT r.ID_Rezerwacji, t.ID_Terminu, t.Data, t.Godzina, u_pac.Imie, u_pac.Nazwisko, " +
-                        "       u_lek.Imie AS LekarzImie, u_lek.Nazwisko AS LekarzNazwisko, s.Specjalizacja " +
-                        "FROM Rezerwacja r " +
-                        "JOIN Termin t ON r.ID_Terminu = t.ID_Terminu " +
-                        "JOIN Pacjent p ON r.ID_Pacjenta = p.ID_Uzytkownika " +
-                        "JOIN Uzytkownik u_pac ON p.ID_Uzytkownika = u_pac.ID_Uzytkownika " +
-                        "JOIN Lekarz l ON t.ID_Lekarza = l.ID_Uzytkownika " +
-                        "JOIN Uzytkownik u_lek ON l.ID_Uzytkownika = u_lek.ID_Uzytkownika " +
-                        "LEFT JOIN Specjalizacja s ON l.ID_Specjalizacji = s.ID_Specjalizacji " +
-                        "WHERE r.Status_rezerwacji = 'Wymaga potwierdzenia przez rejestracje' " +
-                        "ORDER BY t.Data, t.Godzina";
-
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        String query = PENDING_QUERY + "ORDER BY t.Data, t.Godzina";
+
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getPendingReservations");
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
-                String lekarzInfo = rs.getString("LekarzImie") + " " + rs.getString("LekarzNazwisko") +
-                        (rs.getString("Specjalizacja") != null ? " (" + rs.getString("Specjalizacja") + ")" : "");
-
-                HarmonogramDTO dto = new HarmonogramDTO();
-                dto.setIdTerminu(rs.getInt("ID_Terminu"));
-                dto.setStatus("Wymaga potwierdzenia przez rejestracje");
-                dto.setData(rs.getDate("Data").toLocalDate());
-                dto.setGodzina(rs.getTime("Godzina").toLocalTime());
-                dto.setImiePacjenta(rs.getString("Imie"));
-                dto.setNazwiskoPacjenta(rs.getString("Nazwisko"));
-                dto.setIdRezerwacji(rs.getInt("ID_Rezerwacji"));
-                dto.setLekarz(lekarzInfo);
-
-                list.add(dto);
+                list.add(mapPending(rs));
             }
         }
         return list;
     }
 
-    public List<UserDTO> getAllPatients() throws SQLException {
+    /** Jedna pozycja listy oczekujących (po ID_Terminu) albo null, gdy termin już nie czeka na rejestrację. */
+    public HarmonogramDTO getPendingReservation(int terminId) throws SQLException {
+        String query = PENDING_QUERY + "AND r.ID_Terminu = ?";
+
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getPendingReservation");
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, terminId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapPending(rs) : null;
+            }
+        }
+    }
+
+    private static HarmonogramDTO mapPending(ResultSet rs) throws SQLException {
+        String lekarzInfo = rs.getString("LekarzImie") + " " + rs.getString("LekarzNazwisko") +
+                (rs.getString("Specjalizacja") != null ? " (" + rs.getString("Specjalizacja") + ")" : "");
+
+        HarmonogramDTO dto = new HarmonogramDTO();
+        dto.setIdTerminu(rs.getInt("ID_Terminu"));
+        dto.setStatus(PendingQueue.PENDING_STATUS);
+        dto.setData(rs.getDate("Data").toLocalDate());
+        dto.setGodzina(rs.getTime("Godzina").toLocalTime());
+        dto.setImiePacjenta(rs.getString("Imie"));
+        dto.setNazwiskoPacjenta(rs.getString("Nazwisko"));
+        dto.setIdRezerwacji(rs.getInt("ID_Rezerwacji"));
+        dto.setLekarz(lekarzInfo);
+        return dto;
+    }
+
+    /**
+     * Jedna strona pacjentów pasujących do {@code filter}, posortowana po nazwisku i imieniu.
+     * Cyfry (i "+") szukają po początku PESEL-u lub numeru telefonu, tekst - po początku
+     * nazwiska lub imienia (każde słowo osobno, np. "kowal jan"). Pusty filtr zwraca pierwszą stronę listy.
+     */
+    public List<UserDTO> searchPatients(String filter, int offset, int limit) throws SQLException {
         List<UserDTO> patients = new ArrayList<>();
-        String query = "SELECT u.*, p.PESEL, p.Adres FROM Uzytkownik u " +
+        List<String> params = new ArrayList<>();
+        StringBuilder query = new StringBuilder(
+                "SELECT u.Id_uzytkownika, u.Imie, u.Nazwisko, u.Login, u.Email, u.Numer_telefonu, u.Czy_aktywny, p.PESEL " +
+                "FROM Uzytkownik u " +
                 "JOIN Pacjent p ON u.Id_uzytkownika = p.Id_uzytkownika " +
-                "WHERE u.Rola = 'Pacjent'";
-        try (Connection conn = DatabaseConnectionService.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                patients.add(new UserDTO(
-                        rs.getInt("Id_uzytkownika"),
-                        rs.getString("Imie"),
-                        rs.getString("Nazwisko"),
-                        rs.getString("Login"),
-                        "Pacjent",
-                        rs.getString("Email"),
-                        rs.getString("Numer_telefonu"),
-                        rs.getBoolean("Czy_aktywny"),
-                        null,
-                        null,
-                        rs.getString("PESEL")
-                ));
+                "WHERE u.Rola = 'Pacjent'");
+
+        String trimmed = filter == null ? "" : filter.trim();
+        if (trimmed.matches("[+\\d][\\d ]*")) {
+            String digits = trimmed.replace(" ", "");
+            query.append(" AND (CAST(p.PESEL AS text) LIKE ? ESCAPE '\\' OR CAST(u.Numer_telefonu AS text) LIKE ? ESCAPE '\\')");
+            params.add(SqlPatterns.likePrefix(digits));
+            params.add(SqlPatterns.likePrefix(digits));
+        } else if (!trimmed.isEmpty()) {
+            for (String word : trimmed.toLowerCase().split("\\s+")) {
+                query.append(" AND (lower(u.Nazwisko) LIKE ? ESCAPE '\\' OR lower(u.Imie) LIKE ? ESCAPE '\\')");
+                params.add(SqlPatterns.likePrefix(word));
+                params.add(SqlPatterns.likePrefix(word));
+            }
+        }
+        query.append(" ORDER BY u.Nazwisko, u.Imie, u.Id_uzytkownika LIMIT ? OFFSET ?");
+
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.searchPatients");
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            int i = 1;
+            for (String param : params) {
+                stmt.setString(i++, param);
+            }
+            stmt.setInt(i++, limit);
+            stmt.setInt(i, offset);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    patients.add(new UserDTO(
+                            rs.getInt("Id_uzytkownika"),
+                            rs.getString("Imie"),
+                            rs.getString("Nazwisko"),
+                            rs.getString("Login"),
+                            "Pacjent",
+                            rs.getString("Email"),
+                            rs.getString("Numer_telefonu"),
+                            rs.getBoolean("Czy_aktywny"),
+                            null,
+                            null,
+                            rs.getString("PESEL")
+                    ));
+                }
             }
         }
         return patients;
     }
 
+    /** Powody wizyt specjalizacji lekarza w kolejności z bazy, na końcu pozycja -1 "Inny". */
     public Map<Integer, String> getVisitReasons(int doctorId) throws SQLException {
+        return ReferenceDataCache.get("powody_wizyty", doctorId,
+                () -> Collections.unmodifiableMap(loadVisitReasons(doctorId)));
+    }
+
+    private Map<Integer, String> loadVisitReasons(int doctorId) throws SQLException {
         Map<Integer, String> reasons = new LinkedHashMap<>();
         String query = "SELECT pw.ID_PowodWizyty, pw.Powod_wizyty " +
                 "FROM PowodWizyty pw " +
                 "JOIN Lekarz l ON pw.ID_Specjalizacji = l.ID_Specjalizacji " +
                 "WHERE l.id_uzytkownika = ?";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getVisitReasons");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, doctorId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -255,7 +498,7 @@ public class ReceptionService {
         return reasons;
     }
 
-    public BookingResult bookAppointment(int terminId, Integer existingPatientId,
+    public BookingResult bookAppointment(HarmonogramDTO slot, Integer existingPatientId,
                                          String newName, String newSurname, String newPesel,
                                          String newPhone, String newEmail, String newAddress,
                                          int reasonId, String visitReasonNote,
@@ -265,9 +508,17 @@ public class ReceptionService {
         Connection conn = null;
         String generatedLogin = null;
         String plainPassword = null;
+        String hashedPassword = null;
+
+        if (existingPatientId == null) {
+            if (newPesel == null || !newPesel.matches("\\d{11}")) throw new ValidationException("PESEL musi składać się z 11 cyfr.");
+            // Hash przed pobraniem połączenia - nie trzyma połączenia ani zajętego terminu
+            plainPassword = "Start" + newPesel.substring(0, 4);
+            hashedPassword = PasswordHasher.hash(plainPassword);
+        }
 
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("ReceptionService.bookAppointment");
 
             if (existingPatientId == null) {
                 UserValidator.checkUniqueness(conn, null, newEmail, newPhone, newPesel);
@@ -276,6 +527,9 @@ public class ReceptionService {
             }
 
             conn.setAutoCommit(false);
+            int terminId = resolveTerminId(conn, slot);
+            // Zajęcie terminu przed tworzeniem konta - przegrany odpada od razu, bez żadnych INSERT-ów
+            SlotTime claimed = claimSlot(conn, terminId);
             int finalPatientId;
 
             if (existingPatientId == null) {
@@ -283,8 +537,6 @@ public class ReceptionService {
                 if (UserValidator.exists(conn, "Uzytkownik", "Login", generatedLogin)) {
                     generatedLogin += "1";
                 }
-                plainPassword = "Start" + newPesel.substring(0, 4);
-                String hashedPassword = BCrypt.hashpw(plainPassword, BCrypt.gensalt());
 
                 String insertUser = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Numer_telefonu, Email, Rola, Czy_aktywny) VALUES (?, ?, ?, ?, ?, ?, 'Pacjent', true) RETURNING Id_uzytkownika";
                 try (PreparedStatement stmtUser = conn.prepareStatement(insertUser)) {
@@ -315,6 +567,8 @@ public class ReceptionService {
                     if (rs.next()) idRezerwacji = rs.getInt(1);
                     else throw new SQLException("Błąd tworzenia rezerwacji.");
                 }
+            } catch (SQLException e) {
+                throw slotTakenOr(e);
             }
 
             String insertVisit = "INSERT INTO Wizyta (ID_Rezerwacji, ID_PowodWizyty, Opis_Powodu, Notatka) VALUES (?, ?, ?, ?)";
@@ -327,10 +581,14 @@ public class ReceptionService {
                 stmtVis.executeUpdate();
             }
 
+            ScheduleChanges.publish(conn, ScheduleChange.reservation(claimed.doctorId(), claimed.date(), claimed.time(),
+                    terminId, finalPatientId, initialStatus));
             conn.commit();
+            AvailabilityIndex.markTaken(claimed.doctorId(), claimed.date(), claimed.time());
+            StatsCache.invalidate(claimed.date());
             return new BookingResult(true, generatedLogin, plainPassword);
 
-        } catch (SQLException e) {
+        } catch (SQLException | ValidationException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw e;
         } finally {
@@ -338,6 +596,71 @@ public class ReceptionService {
         }
     }
 
+    /**
+     * ID_Terminu wybranego slotu. Slot z {@link AvailabilityIndex} (ID 0) odszukuje istniejący wiersz
+     * zwykłym odczytem, bez blokad - o zajęciu i tak rozstrzyga {@link #claimSlot}. Wiersz tworzy
+     * (pod blokadą doradczą) tylko tryb wirtualny; w trybie zmaterializowanym wiersze zakłada wyłącznie SlotGenerator.
+     */
+    private int resolveTerminId(Connection conn, HarmonogramDTO slot) throws SQLException, ValidationException {
+        if (slot.getIdTerminu() != 0) {
+            return slot.getIdTerminu();
+        }
+        // Przy kilku wierszach na tę samą godzinę najpierw ten bez aktywnej rezerwacji
+        String existing = "SELECT t.ID_Terminu FROM Termin t " +
+                "WHERE t.ID_Lekarza = ? AND t.Data = ? AND t.Godzina = ? " +
+                "ORDER BY EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.ID_Terminu = t.ID_Terminu AND r.Status_rezerwacji != 'Anulowana'), " +
+                "t.ID_Terminu LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(existing)) {
+            stmt.setInt(1, slot.getIdLekarza());
+            stmt.setDate(2, Date.valueOf(slot.getData()));
+            stmt.setTime(3, Time.valueOf(slot.getGodzina()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+        if (!VirtualSlots.isEnabled()) {
+            throw new ValidationException(SLOT_TAKEN_MESSAGE);
+        }
+        int terminId = VirtualSlots.materialize(conn, slot.getIdLekarza(), slot.getData(), slot.getGodzina());
+        if (terminId == -1) {
+            throw new ValidationException("Wybrany termin jest poza godzinami pracy lekarza.");
+        }
+        return terminId;
+    }
+
+    /**
+     * Zajmuje termin na czas bieżącej transakcji: blokuje wiersz Termin, o ile nie ma on aktywnej
+     * rezerwacji. SKIP LOCKED sprawia, że konkurent trzymający ten sam termin nie jest oczekiwany,
+     * tylko od razu przegrywa; inne terminy nie są blokowane. Ostatecznym arbitrem jest
+     * unikalny indeks częściowy na Rezerwacja(ID_Terminu) - patrz {@link #slotTakenOr}.
+     * Zwraca lekarza i czas zajętego terminu (do aktualizacji {@link AvailabilityIndex}).
+     */
+    private SlotTime claimSlot(Connection conn, int terminId) throws SQLException, ValidationException {
+        String claim = "SELECT t.ID_Lekarza, t.Data, t.Godzina FROM Termin t " +
+                "WHERE t.ID_Terminu = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM Rezerwacja r WHERE r.ID_Terminu = t.ID_Terminu AND r.Status_rezerwacji != 'Anulowana') " +
+                "FOR UPDATE SKIP LOCKED";
+        try (PreparedStatement stmt = conn.prepareStatement(claim)) {
+            stmt.setInt(1, terminId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new ValidationException(SLOT_TAKEN_MESSAGE);
+                }
+                return new SlotTime(rs.getInt("ID_Lekarza"), rs.getDate("Data").toLocalDate(), rs.getTime("Godzina").toLocalTime());
+            }
+        }
+    }
+
+    private record SlotTime(int doctorId, LocalDate date, LocalTime time) {}
+
+    /** Naruszenie unikalności przy zapisie rezerwacji oznacza, że ktoś był szybszy. */
+    private static SQLException slotTakenOr(SQLException e) throws ValidationException {
+        if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+            throw new ValidationException(SLOT_TAKEN_MESSAGE);
+        }
+        return e;
+    }
+
     public HarmonogramDTO getAppointmentDetails(int terminId) throws SQLException {
         String query = "SELECT r.ID_Rezerwacji, u.Imie, u.Nazwisko, u.Numer_telefonu, u.Email, p.PESEL, r.Status_rezerwacji, w.Opis_Powodu " +
                 "FROM Rezerwacja r " +
@@ -346,7 +669,7 @@ public class ReceptionService {
                 "LEFT JOIN Wizyta w ON r.ID_Rezerwacji = w.ID_Rezerwacji " +
                 "WHERE r.ID_Terminu = ? AND r.Status_rezerwacji != 'Anulowana'";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getAppointmentDetails");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, terminId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -368,36 +691,56 @@ public class ReceptionService {
         return null;
     }
 
-    public void rescheduleAppointment(int reservationId, int newTerminId) throws SQLException, ValidationException {
+    public void rescheduleAppointment(int reservationId, HarmonogramDTO newSlot) throws SQLException, ValidationException {
         Connection conn = null;
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("ReceptionService.rescheduleAppointment");
             conn.setAutoCommit(false);
-
-            String checkQuery = "SELECT COUNT(*) FROM Rezerwacja WHERE ID_Terminu = ?";
-            try (PreparedStatement chkStmt = conn.prepareStatement(checkQuery)) {
-                chkStmt.setInt(1, newTerminId);
-                try (ResultSet rs = chkStmt.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        throw new ValidationException("Wybrany termin jest już zajęty! Odśwież widok.");
-                    }
-                }
-            }
-
-            String updateQuery = "UPDATE Rezerwacja SET ID_Terminu = ? WHERE ID_Rezerwacji = ?";
+            int newTerminId = resolveTerminId(conn, newSlot);
+            SlotTime claimed = claimSlot(conn, newTerminId);
+
+            // Status w tej samej transakcji co przeniesienie (wcześniej szedł osobnym połączeniem).
+            // RETURNING podaje stary termin - zwalnia się, o ile rezerwacja nie była anulowana
+            String updateQuery = "UPDATE Rezerwacja r SET ID_Terminu = ?, Status_rezerwacji = 'Wymaga potwierdzenia przez pacjenta' " +
+                    "FROM Rezerwacja stara JOIN Termin t ON t.ID_Terminu = stara.ID_Terminu " +
+                    "WHERE r.ID_Rezerwacji = ? AND stara.ID_Rezerwacji = r.ID_Rezerwacji " +
+                    "RETURNING t.ID_Terminu, t.ID_Lekarza, t.Data, t.Godzina, stara.Status_rezerwacji, r.ID_Pacjenta";
+            SlotTime released = null;
+            int oldTerminId;
+            LocalDate oldDate;
+            int patientId;
             try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
                 stmt.setInt(1, newTerminId);
                 stmt.setInt(2, reservationId);
-                int updated = stmt.executeUpdate();
-                if (updated == 0) {
-                    throw new SQLException("Nie znaleziono rezerwacji do aktualizacji.");
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Nie znaleziono rezerwacji do aktualizacji.");
+                    }
+                    oldTerminId = rs.getInt("ID_Terminu");
+                    oldDate = rs.getDate("Data").toLocalDate();
+                    patientId = rs.getInt("ID_Pacjenta");
+                    if (!"Anulowana".equals(rs.getString("Status_rezerwacji"))) {
+                        released = new SlotTime(rs.getInt("ID_Lekarza"), rs.getDate("Data").toLocalDate(), rs.getTime("Godzina").toLocalTime());
+                    }
                 }
+            } catch (SQLException e) {
+                throw slotTakenOr(e);
             }
 
-            updateAppointmentStatus(newTerminId, "Wymaga potwierdzenia przez pacjenta");
-
+            ScheduleChanges.publish(conn, ScheduleChange.reservation(claimed.doctorId(), claimed.date(), claimed.time(),
+                    newTerminId, patientId, "Wymaga potwierdzenia przez pacjenta"));
+            if (released != null) {
+                ScheduleChanges.publish(conn, ScheduleChange.reservation(released.doctorId(), released.date(), released.time(),
+                        oldTerminId, patientId, ScheduleChange.RELEASED));
+            }
             conn.commit();
-        } catch (SQLException e) {
+            AvailabilityIndex.markTaken(claimed.doctorId(), claimed.date(), claimed.time());
+            if (released != null) {
+                AvailabilityIndex.markReleased(released.doctorId(), released.date(), released.time());
+            }
+            StatsCache.invalidate(claimed.date());
+            StatsCache.invalidate(oldDate);
+        } catch (SQLException | ValidationException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw e;
         } finally {
@@ -420,7 +763,7 @@ public class ReceptionService {
                 "WHERE r.ID_Pacjenta = ? " +
                 "ORDER BY t.Data DESC, t.Godzina DESC";
 
-        try (Connection conn = DatabaseConnectionService.getConnection();
+        try (Connection conn = DatabaseConnectionService.getConnection("ReceptionService.getPatientReservations");
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, patientId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -457,14 +800,27 @@ public class ReceptionService {
     public void updateAppointmentStatus(int terminId, String newStatus) throws SQLException {
         Connection conn = null;
         try {
-            conn = DatabaseConnectionService.getConnection();
+            conn = DatabaseConnectionService.getConnection("ReceptionService.updateAppointmentStatus");
             conn.setAutoCommit(false);
 
-            String updateRes = "UPDATE Rezerwacja SET Status_rezerwacji = ? WHERE ID_Terminu = ? AND Status_rezerwacji != 'Anulowana'";
+            String updateRes = "UPDATE Rezerwacja r SET Status_rezerwacji = ? FROM Termin t " +
+                    "WHERE t.ID_Terminu = r.ID_Terminu AND r.ID_Terminu = ? AND r.Status_rezerwacji != 'Anulowana' " +
+                    "RETURNING t.ID_Lekarza, t.Data, t.Godzina, r.ID_Pacjenta";
+            SlotTime slot = null;
+            int patientId = 0;
             try (PreparedStatement stmt = conn.prepareStatement(updateRes)) {
                 stmt.setString(1, newStatus);
                 stmt.setInt(2, terminId);
-                stmt.executeUpdate();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        slot = new SlotTime(rs.getInt("ID_Lekarza"), rs.getDate("Data").toLocalDate(), rs.getTime("Godzina").toLocalTime());
+                        patientId = rs.getInt("ID_Pacjenta");
+                    }
+                }
+            }
+            if (slot != null) {
+                ScheduleChanges.publish(conn, ScheduleChange.reservation(slot.doctorId(), slot.date(), slot.time(),
+                        terminId, patientId, newStatus));
             }
 
             if ("Anulowana".equals(newStatus)) {
@@ -477,6 +833,12 @@ public class ReceptionService {
             }
 
             conn.commit();
+            if (slot != null && "Anulowana".equals(newStatus)) {
+                AvailabilityIndex.markReleased(slot.doctorId(), slot.date(), slot.time());
+            }
+            if (slot != null) {
+                StatsCache.invalidate(slot.date());
+            }
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) {}
             throw e;
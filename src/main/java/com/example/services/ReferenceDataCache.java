@@ -0,0 +1,84 @@
+package com.example.services;
+
+import com.example.data.CacheStatsDTO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wspólny dla całej aplikacji cache danych słownikowych (specjalizacje, lekarze, powody wizyt),
+ * które zmieniają się kilka razy w miesiącu, a czytane są przy każdym otwarciu widoku.
+ * Zmiany robione przez aplikację unieważniają cache od razu ({@link #invalidateAll()}),
+ * zmiany z zewnątrz (inna instancja, ręczny SQL) widać najpóźniej po REFERENCE_CACHE_TTL_SECONDS.
+ * Zwracane wartości są współdzielone między sesjami - wołający ich nie modyfikuje.
+ */
+public class ReferenceDataCache {
+
+    private static final long TTL_NANOS = envInt("REFERENCE_CACHE_TTL_SECONDS", 300) * 1_000_000_000L;
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private record Entry(Object value, long loadedAt, long generation) {}
+
+    private record Counters(LongAdder hits, LongAdder misses) {
+        Counters() {
+            this(new LongAdder(), new LongAdder());
+        }
+    }
+
+    private static final Map<String, Map<Object, Entry>> REGIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Counters> COUNTERS = new ConcurrentHashMap<>();
+    // Podbijana przy unieważnieniu - wynik ładowania rozpoczętego przed zmianą nie trafi już do cache
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    public static <T> T get(String region, Object key, Loader<T> loader) throws SQLException {
+        Map<Object, Entry> entries = REGIONS.computeIfAbsent(region, r -> new ConcurrentHashMap<>());
+        Counters counters = COUNTERS.computeIfAbsent(region, r -> new Counters());
+
+        long generation = GENERATION.get();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.generation() == generation && System.nanoTime() - entry.loadedAt() < TTL_NANOS) {
+            counters.hits().increment();
+            @SuppressWarnings("unchecked")
+            T value = (T) entry.value();
+            return value;
+        }
+
+        counters.misses().increment();
+        T value = loader.load();
+        if (GENERATION.get() == generation) {
+            entries.put(key, new Entry(value, System.nanoTime(), generation));
+        }
+        return value;
+    }
+
+    public static <T> T get(String region, Loader<T> loader) throws SQLException {
+        return get(region, "", loader);
+    }
+
+    /** Wołać po zatwierdzeniu transakcji zmieniającej lekarzy, specjalizacje lub aktywność kont. */
+    public static void invalidateAll() {
+        GENERATION.incrementAndGet();
+        REGIONS.values().forEach(Map::clear);
+    }
+
+    public static List<CacheStatsDTO> getStats() {
+        List<CacheStatsDTO> stats = new ArrayList<>();
+        COUNTERS.forEach((region, counters) -> stats.add(new CacheStatsDTO(region,
+                counters.hits().sum(), counters.misses().sum(), REGIONS.getOrDefault(region, Map.of()).size())));
+        return stats;
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+}
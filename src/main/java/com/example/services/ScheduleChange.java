@@ -0,0 +1,78 @@
+package com.example.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Lekka informacja o zmianie rozsyłana między węzłami przez {@link ScheduleChanges}.
+ * Nie niesie danych do wyświetlenia - odbiorca tylko decyduje, czy przeładować swój widok lub cache.
+ */
+public record ScheduleChange(Kind kind, int doctorId, LocalDate date, LocalTime time,
+                             int terminId, int patientId, String status) {
+
+    /** Status terminu zwolnionego przez przełożenie wizyty. */
+    public static final String RELEASED = "Wolny";
+
+    public enum Kind {
+        /** Rezerwacja na terminie: nowa, zmiana statusu, przełożenie. */
+        REZERWACJA,
+        /** Grafik lekarza (godziny pracy, nowy lekarz) - bez konkretnego dnia. */
+        GRAFIK,
+        /** Dane słownikowe (aktywność kont itp.). */
+        SLOWNIKI,
+        /** Zmiany mogły umknąć (zerwany nasłuch) - wszystko do odświeżenia; tylko lokalnie. */
+        WSZYSTKO
+    }
+
+    static ScheduleChange reservation(int doctorId, LocalDate date, LocalTime time, int terminId, int patientId, String status) {
+        return new ScheduleChange(Kind.REZERWACJA, doctorId, date, time, terminId, patientId, status);
+    }
+
+    static ScheduleChange schedule(int doctorId) {
+        return new ScheduleChange(Kind.GRAFIK, doctorId, null, null, 0, 0, null);
+    }
+
+    static ScheduleChange referenceData() {
+        return new ScheduleChange(Kind.SLOWNIKI, 0, null, null, 0, 0, null);
+    }
+
+    static ScheduleChange everything() {
+        return new ScheduleChange(Kind.WSZYSTKO, 0, null, null, 0, 0, null);
+    }
+
+    /** Czy zmiana dotyczy grafiku lekarza w dniach [from, to]. */
+    public boolean concernsDoctor(int doctorId, LocalDate from, LocalDate to) {
+        if (kind == Kind.WSZYSTKO) return true;
+        if (kind == Kind.SLOWNIKI || this.doctorId != doctorId) return false;
+        return date == null || !date.isBefore(from) && !date.isAfter(to);
+    }
+
+    public boolean concernsPatient(int patientId) {
+        return kind == Kind.WSZYSTKO || kind == Kind.REZERWACJA && this.patientId == patientId;
+    }
+
+    public boolean concernsReservations() {
+        return kind == Kind.WSZYSTKO || kind == Kind.REZERWACJA;
+    }
+
+    /** Format kanału: pola rozdzielone '|', status na końcu (może zawierać spacje). */
+    String encode() {
+        return kind + "|" + doctorId + "|" + (date != null ? date : "") + "|" + (time != null ? time : "") + "|"
+                + terminId + "|" + patientId + "|" + (status != null ? status : "");
+    }
+
+    static ScheduleChange decode(String payload) {
+        String[] fields = payload.split("\\|", 7);
+        if (fields.length != 7) {
+            throw new IllegalArgumentException("Nieprawidłowy komunikat zmiany: " + payload);
+        }
+        return new ScheduleChange(
+                Kind.valueOf(fields[0]),
+                Integer.parseInt(fields[1]),
+                fields[2].isEmpty() ? null : LocalDate.parse(fields[2]),
+                fields[3].isEmpty() ? null : LocalTime.parse(fields[3]),
+                Integer.parseInt(fields[4]),
+                Integer.parseInt(fields[5]),
+                fields[6].isEmpty() ? null : fields[6]);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Jedno połączenie na węzeł nasłuchujące kanału {@link ScheduleChanges#CHANNEL}. Po zerwaniu
+ * łączy się ponownie, a ponieważ NOTIFY wysłane w przerwie przepadły, rozsyła lokalnie
+ * {@link ScheduleChange.Kind#WSZYSTKO} (cache słowników czyszczony, widoki się przeładowują;
+ * indeks dostępności wyrówna najbliższe uzgadnianie).
+ */
+@Component
+public class ScheduleChangeListener {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final boolean enabled;
+    private final int pollMillis;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public ScheduleChangeListener(@Value("${przychodnia.notify.enabled:true}") boolean enabled,
+                                  @Value("${przychodnia.notify.poll-ms:10000}") int pollMillis) {
+        this.enabled = enabled;
+        this.pollMillis = pollMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        thread = Thread.ofPlatform().name("pg-listener").daemon().start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    private void listen() {
+        boolean reconnected = false;
+        long backoff = 1_000;
+        while (running) {
+            try (Connection conn = DatabaseConnectionService.openDedicatedConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("LISTEN " + ScheduleChanges.CHANNEL);
+                System.out.println(">>> [ZMIANY] Nasłuch kanału " + ScheduleChanges.CHANNEL + " aktywny.");
+                if (reconnected) {
+                    ScheduleChanges.receiveLocal(ScheduleChange.everything());
+                }
+                backoff = 1_000;
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(pollMillis);
+                    if (notifications == null || notifications.length == 0) {
+                        // Cisza na kanale - upewnij się, że połączenie nadal żyje
+                        stmt.execute("SELECT 1");
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        ScheduleChanges.receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) break;
+                System.err.println("!!! [ZMIANY] Nasłuch przerwany: " + e.getMessage() + " - ponowna próba za " + backoff + " ms");
+                reconnected = true;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Powiadomienia o zmianach w rezerwacjach i grafikach przez PostgreSQL LISTEN/NOTIFY.
+ * {@link #publish} woła się w transakcji zapisu - NOTIFY wychodzi dopiero przy commit, a przy
+ * rollback przepada. Każdy węzeł odbiera je na jednym połączeniu ({@link ScheduleChangeListener}),
+ * poprawia swoje cache (o ile zmiana przyszła z innego węzła) i przekazuje ją subskrybentom - widokom.
+ */
+public class ScheduleChanges {
+
+    static final String CHANNEL = "przychodnia_zmiany";
+
+    // Identyfikator węzła - własnych zmian nie trzeba drugi raz nanosić na cache
+    private static final String NODE = UUID.randomUUID().toString().substring(0, 8);
+
+    private static final List<Consumer<ScheduleChange>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+    private static final LongAdder PUBLISHED = new LongAdder();
+    private static final LongAdder RECEIVED = new LongAdder();
+
+    static void publish(Connection conn, ScheduleChange change) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+            stmt.setString(1, CHANNEL);
+            stmt.setString(2, NODE + "|" + change.encode());
+            stmt.execute();
+        }
+        PUBLISHED.increment();
+    }
+
+    /** Rejestruje odbiorcę zmian; zwrócone zadanie wyrejestrowuje go (np. w onDetach widoku). */
+    public static Runnable subscribe(Consumer<ScheduleChange> subscriber) {
+        SUBSCRIBERS.add(subscriber);
+        return () -> SUBSCRIBERS.remove(subscriber);
+    }
+
+    public static long getPublished() {
+        return PUBLISHED.sum();
+    }
+
+    public static long getReceived() {
+        return RECEIVED.sum();
+    }
+
+    /** Komunikat z kanału: {@code węzeł|zmiana}. */
+    static void receive(String payload) {
+        RECEIVED.increment();
+        int separator = payload.indexOf('|');
+        ScheduleChange change;
+        try {
+            change = ScheduleChange.decode(payload.substring(separator + 1));
+        } catch (RuntimeException e) {
+            System.err.println("!!! [ZMIANY] Pominięto komunikat: " + e.getMessage());
+            return;
+        }
+        if (!NODE.equals(payload.substring(0, Math.max(separator, 0)))) {
+            applyRemote(change);
+        }
+        deliver(change);
+    }
+
+    /** Zmiana znana tylko lokalnie (np. po zerwaniu nasłuchu) - idzie do cache i subskrybentów. */
+    static void receiveLocal(ScheduleChange change) {
+        applyRemote(change);
+        deliver(change);
+    }
+
+    private static void applyRemote(ScheduleChange change) {
+        switch (change.kind()) {
+            case REZERWACJA -> {
+                if (ScheduleChange.RELEASED.equals(change.status()) || "Anulowana".equals(change.status())) {
+                    AvailabilityIndex.markReleased(change.doctorId(), change.date(), change.time());
+                } else {
+                    AvailabilityIndex.markTaken(change.doctorId(), change.date(), change.time());
+                }
+            }
+            case GRAFIK -> {
+                ReferenceDataCache.invalidateAll();
+                AvailabilityIndex.reloadDoctor(change.doctorId());
+            }
+            case SLOWNIKI, WSZYSTKO -> ReferenceDataCache.invalidateAll();
+        }
+    }
+
+    private static void deliver(ScheduleChange change) {
+        for (Consumer<ScheduleChange> subscriber : SUBSCRIBERS) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                System.err.println("!!! [ZMIANY] Błąd odbiorcy zmiany: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.services;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SchemaService {
+
+    private static final String MIGRATIONS = "classpath:db/migration";
+
+    /**
+     * Indeks, którego wymagają gorące zapytania. Pasuje każdy indeks na tej tabeli zaczynający się
+     * od {@code columns} (nazwa nie ma znaczenia); {@code predicate} - fragment warunku indeksu częściowego.
+     */
+    private record ExpectedIndex(String table, List<String> columns, boolean unique, String predicate, String usedBy) {
+        ExpectedIndex(String table, String columns, boolean unique, String predicate, String usedBy) {
+            this(table, Arrays.asList(columns.toLowerCase().split(",\\s*")), unique, predicate, usedBy);
+        }
+    }
+
+    private static final List<ExpectedIndex> EXPECTED_INDEXES = List.of(
+            new ExpectedIndex("termin", "id_lekarza, data", false, null, "grafik lekarza"),
+            new ExpectedIndex("termin", "data", false, null, "statystyki po dacie"),
+            new ExpectedIndex("statystyka_dzienna", "data, id_lekarza, status_rezerwacji", true, null, "statystyki admina"),
+            new ExpectedIndex("statystyka_dzienna_zmiany", "data", false, null, "statystyki admina (niescalone zmiany)"),
+            new ExpectedIndex("rezerwacja", "id_terminu", false, null, "zajętość terminu"),
+            new ExpectedIndex("rezerwacja", "id_terminu", true, "Anulowana", "jedna aktywna rezerwacja na termin"),
+            new ExpectedIndex("rezerwacja", "id_terminu", false, "Wymaga potwierdzenia przez rejestracje", "lista do potwierdzenia"),
+            new ExpectedIndex("rezerwacja", "id_pacjenta", false, null, "rezerwacje pacjenta"),
+            new ExpectedIndex("wizyta", "id_rezerwacji", true, null, "wizyta rezerwacji"),
+            new ExpectedIndex("uzytkownik", "login", true, null, "logowanie, UserValidator.exists"),
+            new ExpectedIndex("uzytkownik", "email", false, null, "UserValidator.exists"),
+            new ExpectedIndex("uzytkownik", "numer_telefonu", false, null, "UserValidator.exists"),
+            new ExpectedIndex("pacjent", "pesel", true, null, "UserValidator.exists")
+    );
+
+    /**
+     * Migracje z db/migration (Flyway). Baza założona ręcznie przed migracjami dostaje bazową
+     * wersję 1: przybliżony schemat V1 jest pomijany, a od V2 idą już tylko indeksy i nowe tabele.
+     */
+    public int migrate() {
+        MigrateResult result = Flyway.configure()
+                .dataSource(DatabaseConnectionService.getDataSource())
+                .locations(MIGRATIONS)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+        return result.migrationsExecuted;
+    }
+
+    /** Zwraca opisy brakujących indeksów (pusta lista = wszystko na miejscu) i ostrzega o każdym w logu. */
+    public List<String> verifyIndexes() throws SQLException {
+        String sql = "SELECT c.relname AS tabela, i.indisunique, pg_get_expr(i.indpred, i.indrelid) AS predykat, " +
+                "       ARRAY(SELECT a.attname FROM unnest(i.indkey) WITH ORDINALITY k(attnum, nr) " +
+                "             JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = k.attnum " +
+                "             ORDER BY k.nr) AS kolumny " +
+                "FROM pg_index i " +
+                "JOIN pg_class c ON c.oid = i.indrelid " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = current_schema() AND i.indisvalid";
+
+        record ActualIndex(String table, List<String> columns, boolean unique, String predicate) {}
+        List<ActualIndex> actual = new ArrayList<>();
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                actual.add(new ActualIndex(rs.getString("tabela"),
+                        Arrays.asList((String[]) rs.getArray("kolumny").getArray()),
+                        rs.getBoolean("indisunique"), rs.getString("predykat")));
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (ExpectedIndex expected : EXPECTED_INDEXES) {
+            boolean found = actual.stream().anyMatch(index ->
+                    index.table().equals(expected.table())
+                            && index.columns().size() >= expected.columns().size()
+                            && index.columns().subList(0, expected.columns().size()).equals(expected.columns())
+                            && (!expected.unique() || index.unique())
+                            && (expected.predicate() == null
+                                ? index.predicate() == null
+                                : index.predicate() != null && index.predicate().contains(expected.predicate())));
+            if (!found) {
+                String description = expected.table() + " (" + String.join(", ", expected.columns()) + ")" +
+                        (expected.unique() ? " UNIQUE" : "") +
+                        (expected.predicate() != null ? " WHERE ..." + expected.predicate() + "..." : "") +
+                        " - " + expected.usedBy();
+                missing.add(description);
+                System.err.println("!!! [SCHEMAT] Brak indeksu: " + description);
+            }
+        }
+        return missing;
+    }
+}
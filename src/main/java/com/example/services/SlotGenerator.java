@@ -0,0 +1,41 @@
+package com.example.services;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+class SlotGenerator {
+
+    static int generate(Connection conn, int userId, LocalTime start, LocalTime end, LocalDate dateFrom, LocalDate dateTo) throws SQLException {
+        if (VirtualSlots.isEnabled()) return 0;
+
+        long minutes = Duration.between(start, end).toMinutes();
+        if (minutes <= 0 || !dateFrom.isBefore(dateTo)) return 0;
+        long slotsPerDay = (minutes + 14) / 15;
+
+        // Cały zakres dni x godzin generuje baza; istniejące terminy pomija NOT EXISTS zamiast zapytania na każdy slot
+        String insertSql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                "SELECT ?, d.dzien::date, CAST(? AS time) + s.nr * INTERVAL '15 minutes' " +
+                "FROM generate_series(CAST(? AS date), CAST(? AS date) - 1, INTERVAL '1 day') AS d(dzien) " +
+                "CROSS JOIN generate_series(0, ?) AS s(nr) " +
+                "WHERE EXTRACT(ISODOW FROM d.dzien) < 6 " +
+                "AND NOT EXISTS (SELECT 1 FROM Termin t WHERE t.ID_Lekarza = ? AND t.Data = d.dzien::date " +
+                "AND t.Godzina = CAST(? AS time) + s.nr * INTERVAL '15 minutes')";
+
+        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            insertStmt.setInt(1, userId);
+            insertStmt.setTime(2, Time.valueOf(start));
+            insertStmt.setDate(3, Date.valueOf(dateFrom));
+            insertStmt.setDate(4, Date.valueOf(dateTo));
+            insertStmt.setLong(5, slotsPerDay - 1);
+            insertStmt.setInt(6, userId);
+            insertStmt.setTime(7, Time.valueOf(start));
+            return insertStmt.executeUpdate();
+        }
+    }
+}
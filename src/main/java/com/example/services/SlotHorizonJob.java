@@ -0,0 +1,45 @@
+package com.example.services;
+
+import com.example.data.SlotHorizonReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+@Component
+public class SlotHorizonJob {
+
+    private final SlotHorizonService slotHorizonService = new SlotHorizonService();
+
+    private final int horizonDays;
+    private final int parallelism;
+    private final int chunkDays;
+
+    private volatile SlotHorizonReport lastReport;
+
+    public SlotHorizonJob(@Value("${przychodnia.slots.horizon-days:90}") int horizonDays,
+                          @Value("${przychodnia.slots.parallelism:4}") int parallelism,
+                          @Value("${przychodnia.slots.chunk-days:7}") int chunkDays) {
+        this.horizonDays = horizonDays;
+        this.parallelism = parallelism;
+        this.chunkDays = chunkDays;
+    }
+
+    @Scheduled(initialDelayString = "${przychodnia.slots.initial-delay-ms:30000}",
+            fixedDelayString = "${przychodnia.slots.interval-ms:21600000}")
+    public void run() {
+        if (VirtualSlots.isEnabled()) return;
+
+        try {
+            lastReport = slotHorizonService.topUpAllDoctors(horizonDays, parallelism, chunkDays);
+            System.out.println(">>> [TERMINY] " + lastReport);
+        } catch (SQLException e) {
+            System.err.println("!!! [TERMINY] Błąd uzupełniania horyzontu: " + e.getMessage());
+        }
+    }
+
+    public SlotHorizonReport getLastReport() {
+        return lastReport;
+    }
+}
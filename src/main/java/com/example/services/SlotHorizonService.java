@@ -0,0 +1,110 @@
+package com.example.services;
+
+import com.example.data.SlotHorizonReport;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SlotHorizonService {
+
+    private record DoctorHours(int doctorId, LocalTime start, LocalTime end) {}
+
+    /**
+     * Dopełnia terminy wszystkich aktywnych lekarzy do {@code today + horizonDays}.
+     * Lekarze są przetwarzani równolegle (maks. {@code parallelism} naraz), a zakres dzielony
+     * na porcje po {@code chunkDays} dni - każda porcja to osobne, krótkie zapytanie w autocommit.
+     */
+    public SlotHorizonReport topUpAllDoctors(int horizonDays, int parallelism, int chunkDays) throws SQLException {
+        long started = System.nanoTime();
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(horizonDays);
+
+        List<DoctorHours> doctors = getActiveDoctors();
+        Map<Integer, Integer> created = Collections.synchronizedMap(new TreeMap<>());
+        Set<Integer> failed = Collections.synchronizedSet(new HashSet<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "slot-horizon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (DoctorHours doctor : doctors) {
+                tasks.add(executor.submit(() -> {
+                    try {
+                        created.put(doctor.doctorId(), topUpDoctor(doctor, from, to, chunkDays));
+                    } catch (SQLException e) {
+                        failed.add(doctor.doctorId());
+                        System.err.println("!!! [TERMINY] Lekarz " + doctor.doctorId() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new SQLException("Błąd generowania terminów", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (created.values().stream().anyMatch(count -> count > 0)) StatsCache.invalidateHeatmaps();
+        return new SlotHorizonReport(to, created, failed, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    private int topUpDoctor(DoctorHours doctor, LocalDate from, LocalDate to, int chunkDays) throws SQLException {
+        int created = 0;
+        try (Connection conn = DatabaseConnectionService.getConnection("SlotHorizonService.topUpDoctor")) {
+            LocalDate chunkStart = from;
+            while (chunkStart.isBefore(to)) {
+                LocalDate chunkEnd = chunkStart.plusDays(Math.max(1, chunkDays));
+                if (chunkEnd.isAfter(to)) chunkEnd = to;
+                created += SlotGenerator.generate(conn, doctor.doctorId(), doctor.start(), doctor.end(), chunkStart, chunkEnd);
+                chunkStart = chunkEnd;
+            }
+            // Nowe terminy zmieniają oferowane w mapach popytu i wolne miejsca na innych węzłach
+            if (created > 0) ScheduleChanges.publish(conn, ScheduleChange.schedule(doctor.doctorId()));
+        }
+        return created;
+    }
+
+    private List<DoctorHours> getActiveDoctors() throws SQLException {
+        List<DoctorHours> doctors = new ArrayList<>();
+        String sql = "SELECT l.ID_Uzytkownika, l.Start_pracy, l.Koniec_pracy " +
+                "FROM Lekarz l " +
+                "JOIN Uzytkownik u ON u.ID_Uzytkownika = l.ID_Uzytkownika " +
+                "WHERE u.Czy_aktywny = TRUE AND l.Start_pracy IS NOT NULL AND l.Koniec_pracy IS NOT NULL";
+
+        try (Connection conn = DatabaseConnectionService.getConnection("SlotHorizonService.getActiveDoctors");
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                doctors.add(new DoctorHours(
+                        rs.getInt("ID_Uzytkownika"),
+                        rs.getTime("Start_pracy").toLocalTime(),
+                        rs.getTime("Koniec_pracy").toLocalTime()
+                ));
+            }
+        }
+        return doctors;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.services;
+
+class SqlPatterns {
+
+    /** Wzorzec LIKE "zaczyna się od {@code value}" (do użycia z ESCAPE '\'). */
+    static String likePrefix(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
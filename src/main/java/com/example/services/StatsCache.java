@@ -0,0 +1,259 @@
+package com.example.services;
+
+import com.example.data.DailyStatsDTO;
+import com.example.data.HeatmapDTO;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache statystyk dziennych dla {@link AdminStatsService}. Minione dni rzadko się zmieniają, więc
+ * trzymane są bez TTL; dzisiejszy i przyszłe dni zawsze idą do bazy. Zmiana rezerwacji z
+ * {@link ScheduleChanges} (także z innych węzłów) usuwa swój dzień, a zerwany nasłuch - wszystko.
+ * Rozmiar ograniczony liczbą wierszy (STATS_CACHE_MAX_ROWS), wypychane najdawniej używane dni.
+ * Obok dni trzyma kilka ostatnich map popytu (tydzień × kwadrans), także dla zakresów sięgających dziś i dalej.
+ * Mapę usuwa zmiana rezerwacji w jej zakresie oraz każda zmiana grafiku - godziny pracy, nowy lekarz, terminy
+ * dołożone przez {@link SlotHorizonJob} (oferowane zależą od terminów i godzin pracy, a zmiana nie niesie dnia).
+ */
+public class StatsCache {
+
+    private static final int MAX_ROWS = envInt("STATS_CACHE_MAX_ROWS", 200_000);
+    private static final int MAX_HEATMAPS = 32;
+
+    @FunctionalInterface
+    public interface Loader {
+        List<DailyStatsDTO> load(LocalDate start, LocalDate end) throws SQLException;
+    }
+
+    private record Key(AdminStatsService.Breakdown breakdown, LocalDate date) {}
+
+    // Kolejność dostępu = kolejność wypychania; dostęp tylko pod synchronized (LRU)
+    private static final LinkedHashMap<Key, List<DailyStatsDTO>> DAYS = new LinkedHashMap<>(256, 0.75f, true);
+    private static int rows;
+
+    private record HeatmapKey(LocalDate from, LocalDate to, int specializationId) {}
+
+    private static final LinkedHashMap<HeatmapKey, HeatmapDTO> HEATMAPS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<HeatmapKey, HeatmapDTO> eldest) {
+            if (size() <= MAX_HEATMAPS) return false;
+            EVICTIONS.increment();
+            return true;
+        }
+    };
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder HEATMAP_HITS = new LongAdder();
+    private static final LongAdder HEATMAP_MISSES = new LongAdder();
+    // Numery zmian (pod synchronized): ładowanie zapisuje dzień lub mapę tylko, jeśli od jego startu nie
+    // unieważniono właśnie tego dnia (CHANGED), całego cache ani map. CHANGED trzymane tylko w trakcie ładowań.
+    private static long changeCounter;
+    private static long allChanged;
+    private static long heatmapsChanged;
+    private static final Map<LocalDate, Long> CHANGED = new HashMap<>();
+    private static int loading;
+
+    static {
+        ScheduleChanges.subscribe(StatsCache::onChange);
+    }
+
+    /** Wiersze dla [start, end] posortowane po dacie; brakujące dni doczytuje jednym zapytaniem {@code loader}. */
+    static List<DailyStatsDTO> get(AdminStatsService.Breakdown breakdown, LocalDate start, LocalDate end,
+                                   Loader loader) throws SQLException {
+        LocalDate today = LocalDate.now();
+        long started;
+        Map<LocalDate, List<DailyStatsDTO>> days = new HashMap<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+
+        synchronized (DAYS) {
+            started = changeCounter;
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                List<DailyStatsDTO> cached = day.isBefore(today) ? DAYS.get(new Key(breakdown, day)) : null;
+                if (cached != null) {
+                    days.put(day, cached);
+                    HITS.increment();
+                } else {
+                    if (firstMissing == null) firstMissing = day;
+                    lastMissing = day;
+                    MISSES.increment();
+                }
+            }
+            if (firstMissing != null) loading++;
+        }
+
+        if (firstMissing != null) {
+            try {
+                Map<LocalDate, List<DailyStatsDTO>> loaded = new HashMap<>();
+                for (DailyStatsDTO row : loader.load(firstMissing, lastMissing)) {
+                    loaded.computeIfAbsent(row.getData(), d -> new ArrayList<>()).add(row);
+                }
+                synchronized (DAYS) {
+                    for (LocalDate day = firstMissing; !day.isAfter(lastMissing); day = day.plusDays(1)) {
+                        if (days.containsKey(day)) continue;
+                        List<DailyStatsDTO> dayRows = loaded.getOrDefault(day, List.of());
+                        days.put(day, dayRows);
+                        if (day.isBefore(today) && !changedSince(started, day, day)) {
+                            put(new Key(breakdown, day), dayRows);
+                        }
+                    }
+                }
+            } finally {
+                finishLoad();
+            }
+        }
+
+        List<DailyStatsDTO> result = new ArrayList<>();
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            result.addAll(days.getOrDefault(day, List.of()));
+        }
+        return result;
+    }
+
+    /** Mapa popytu dla [from, to] i specjalizacji (0 = wszystkie); przy braku liczy ją {@code loader}. */
+    static HeatmapDTO getHeatmap(LocalDate from, LocalDate to, int specializationId,
+                                 ReferenceDataCache.Loader<HeatmapDTO> loader) throws SQLException {
+        HeatmapKey key = new HeatmapKey(from, to, specializationId);
+        long started;
+        synchronized (DAYS) {
+            HeatmapDTO cached = HEATMAPS.get(key);
+            if (cached != null) {
+                HEATMAP_HITS.increment();
+                return cached;
+            }
+            started = changeCounter;
+            loading++;
+        }
+        HEATMAP_MISSES.increment();
+        try {
+            HeatmapDTO heatmap = loader.load();
+            synchronized (DAYS) {
+                if (started >= heatmapsChanged && !changedSince(started, from, to)) {
+                    HEATMAPS.put(key, heatmap);
+                }
+            }
+            return heatmap;
+        } finally {
+            finishLoad();
+        }
+    }
+
+    /** Unieważnia dzień: wiersze dnia (o ile minął - tylko takie są w cache) i mapy popytu, których zakres go obejmuje. */
+    public static void invalidate(LocalDate date) {
+        synchronized (DAYS) {
+            if (loading > 0) CHANGED.put(date, ++changeCounter);
+            HEATMAPS.keySet().removeIf(key -> !date.isBefore(key.from()) && !date.isAfter(key.to()));
+            if (!date.isBefore(LocalDate.now())) return;
+            for (AdminStatsService.Breakdown breakdown : AdminStatsService.Breakdown.values()) {
+                List<DailyStatsDTO> removed = DAYS.remove(new Key(breakdown, date));
+                if (removed != null) rows -= weight(removed);
+            }
+        }
+    }
+
+    public static void invalidateAll() {
+        synchronized (DAYS) {
+            allChanged = ++changeCounter;
+            DAYS.clear();
+            HEATMAPS.clear();
+            rows = 0;
+        }
+    }
+
+    /** Same mapy popytu - dni nie zależą od grafiku. */
+    public static void invalidateHeatmaps() {
+        synchronized (DAYS) {
+            heatmapsChanged = ++changeCounter;
+            HEATMAPS.clear();
+        }
+    }
+
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    public static long getHeatmapHits() {
+        return HEATMAP_HITS.sum();
+    }
+
+    public static long getHeatmapMisses() {
+        return HEATMAP_MISSES.sum();
+    }
+
+    public static int getEntries() {
+        synchronized (DAYS) {
+            return DAYS.size();
+        }
+    }
+
+    public static int getRows() {
+        synchronized (DAYS) {
+            return rows;
+        }
+    }
+
+    private static void onChange(ScheduleChange change) {
+        switch (change.kind()) {
+            case REZERWACJA -> {
+                if (change.date() != null) invalidate(change.date());
+            }
+            case GRAFIK -> invalidateHeatmaps();
+            case WSZYSTKO -> invalidateAll();
+            default -> { }
+        }
+    }
+
+    // Pod synchronized (DAYS)
+    private static boolean changedSince(long started, LocalDate from, LocalDate to) {
+        if (started < allChanged) return true;
+        for (Map.Entry<LocalDate, Long> change : CHANGED.entrySet()) {
+            if (change.getValue() > started && !change.getKey().isBefore(from) && !change.getKey().isAfter(to)) return true;
+        }
+        return false;
+    }
+
+    private static void finishLoad() {
+        synchronized (DAYS) {
+            if (--loading == 0) CHANGED.clear();
+        }
+    }
+
+    private static void put(Key key, List<DailyStatsDTO> dayRows) {
+        List<DailyStatsDTO> previous = DAYS.put(key, List.copyOf(dayRows));
+        if (previous != null) rows -= weight(previous);
+        rows += weight(dayRows);
+        Iterator<List<DailyStatsDTO>> eldest = DAYS.values().iterator();
+        while (rows > MAX_ROWS && eldest.hasNext()) {
+            rows -= weight(eldest.next());
+            eldest.remove();
+            EVICTIONS.increment();
+        }
+    }
+
+    // Pusty dzień też zajmuje wpis
+    private static int weight(List<DailyStatsDTO> dayRows) {
+        return Math.max(1, dayRows.size());
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.services;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+@Component
+public class StatsRollupJob {
+
+    private final AdminStatsService adminStatsService = new AdminStatsService();
+
+    /** Scala zmiany z wyzwalaczy z podsumowaniem statystyk, żeby tabela zmian nie rosła między odczytami. */
+    @Scheduled(initialDelayString = "${przychodnia.stats.compact-initial-delay-ms:60000}",
+            fixedDelayString = "${przychodnia.stats.compact-interval-ms:60000}")
+    public void run() {
+        try {
+            int moved = adminStatsService.compactRollup();
+            if (moved > 0) {
+                System.out.println(">>> [STATYSTYKI] Scalono zmian podsumowania: " + moved);
+            }
+        } catch (SQLException e) {
+            System.err.println("!!! [STATYSTYKI] Błąd scalania podsumowania: " + e.getMessage());
+        }
+    }
+}
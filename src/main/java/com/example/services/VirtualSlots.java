@@ -0,0 +1,93 @@
+package com.example.services;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Tryb wirtualnych terminów (SLOT_MODE=virtual): wolne sloty są wyliczane w locie z
+ * Lekarz.Start_pracy/Koniec_pracy, a wiersz w Termin powstaje dopiero przy rezerwacji.
+ */
+class VirtualSlots {
+
+    private static final boolean ENABLED = "virtual".equalsIgnoreCase(System.getenv("SLOT_MODE"));
+
+    /**
+     * CTE {@code sloty(Data, Godzina)}: godziny pracy lekarza w dniach roboczych zakresu plus
+     * godziny już istniejących wierszy Termin. Parametry wiąże {@link #bindSlots}.
+     */
+    static final String SLOTS_CTE =
+            "WITH sloty AS ( " +
+                    "SELECT g.ts::date AS Data, g.ts::time AS Godzina " +
+                    "FROM Lekarz l " +
+                    "CROSS JOIN generate_series(CAST(? AS date), CAST(? AS date), INTERVAL '1 day') AS d(dzien) " +
+                    "CROSS JOIN generate_series(d.dzien::date + l.Start_pracy, d.dzien::date + l.Koniec_pracy, INTERVAL '15 minutes') AS g(ts) " +
+                    "WHERE l.ID_Uzytkownika = ? AND EXTRACT(ISODOW FROM d.dzien) < 6 " +
+                    "AND g.ts < d.dzien::date + l.Koniec_pracy " +
+                    "UNION " +
+                    "SELECT t.Data, t.Godzina FROM Termin t WHERE t.ID_Lekarza = ? AND t.Data BETWEEN ? AND ? " +
+                    ") ";
+
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Wiąże parametry {@link #SLOTS_CTE} od pozycji {@code index}; zwraca następny wolny indeks. */
+    static int bindSlots(PreparedStatement stmt, int index, int doctorId, LocalDate from, LocalDate to) throws SQLException {
+        stmt.setDate(index++, Date.valueOf(from));
+        stmt.setDate(index++, Date.valueOf(to));
+        stmt.setInt(index++, doctorId);
+        stmt.setInt(index++, doctorId);
+        stmt.setDate(index++, Date.valueOf(from));
+        stmt.setDate(index++, Date.valueOf(to));
+        return index;
+    }
+
+    /**
+     * Zwraca ID_Terminu dla (lekarz, data, godzina), tworząc wiersz jeśli jeszcze nie istnieje.
+     * Blokada doradcza na lekarza i dzień (do końca transakcji) chroni przed zdublowaniem wiersza.
+     * Zwraca -1, gdy godzina wypada poza grafikiem lekarza.
+     */
+    static int materialize(Connection conn, int doctorId, LocalDate date, LocalTime time) throws SQLException {
+        try (PreparedStatement lock = conn.prepareStatement("SELECT pg_advisory_xact_lock(?, ?)")) {
+            lock.setInt(1, doctorId);
+            lock.setInt(2, (int) date.toEpochDay());
+            lock.execute();
+        }
+
+        String sql = "WITH istniejacy AS ( " +
+                "SELECT ID_Terminu FROM Termin WHERE ID_Lekarza = ? AND Data = ? AND Godzina = ? " +
+                "ORDER BY ID_Terminu LIMIT 1 " +
+                "), nowy AS ( " +
+                "INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                "SELECT l.ID_Uzytkownika, ?, ? FROM Lekarz l " +
+                "WHERE l.ID_Uzytkownika = ? AND CAST(? AS time) >= l.Start_pracy AND CAST(? AS time) < l.Koniec_pracy " +
+                "AND EXTRACT(ISODOW FROM CAST(? AS date)) < 6 " +
+                "AND NOT EXISTS (SELECT 1 FROM istniejacy) " +
+                "RETURNING ID_Terminu " +
+                ") " +
+                "SELECT ID_Terminu FROM istniejacy UNION ALL SELECT ID_Terminu FROM nowy";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Date sqlDate = Date.valueOf(date);
+            Time sqlTime = Time.valueOf(time);
+            stmt.setInt(1, doctorId);
+            stmt.setDate(2, sqlDate);
+            stmt.setTime(3, sqlTime);
+            stmt.setDate(4, sqlDate);
+            stmt.setTime(5, sqlTime);
+            stmt.setInt(6, doctorId);
+            stmt.setTime(7, sqlTime);
+            stmt.setTime(8, sqlTime);
+            stmt.setDate(9, sqlDate);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
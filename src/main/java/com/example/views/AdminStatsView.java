@@ -1,7 +1,13 @@
 package com.example.views;
 
+import com.example.data.DailyStatsDTO;
+import com.example.data.HeatmapDTO;
+import com.example.data.SpecjalizacjaDTO;
+import com.example.services.AdminService;
 import com.example.services.AdminStatsService;
 import com.example.security.UserSession;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.Svg;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.datepicker.DatePicker;
@@ -10,28 +16,47 @@ import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.FlexLayout;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.radiobutton.RadioButtonGroup;
+import com.vaadin.flow.component.select.Select;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
 
 @Route(value = "admin-stats", layout = MainLayout.class)
 @PageTitle("Statystyki - Dashboard")
 public class AdminStatsView extends VerticalLayout {
 
+    private static final String MEASURE_BOOKED = "Zajęte terminy";
+    private static final String MEASURE_CANCELLED = "Anulowania";
+    private static final String MEASURE_FREE = "Wolne terminy";
+
     private final AdminStatsService statsService = new AdminStatsService();
 
     private DatePicker startDate;
     private DatePicker endDate;
 
-    private HorizontalLayout reservationsChartLayout;
-    private HorizontalLayout cancellationsChartLayout;
+    private Svg reservationsChart;
+    private Svg cancellationsChart;
+    private Span bucketInfo;
+
+    private Select<SpecjalizacjaDTO> heatmapSpecialization;
+    private RadioButtonGroup<String> heatmapMeasure;
+    private Svg heatmapChart;
+    // Ostatnio pobrana mapa - zmiana miary tylko ją przerysowuje
+    private HeatmapDTO heatmap;
+    // Preset ustawia obie daty naraz - słuchacze dat nie odświeżają wtedy wykresów po każdej z osobna
+    private boolean settingRange;
 
     public AdminStatsView() {
         UserSession currentUser = UserSession.getLoggedInUser();
@@ -58,13 +83,16 @@ public class AdminStatsView extends VerticalLayout {
         dashboardLayout.getStyle().set("gap", "20px");
 
 
-        reservationsChartLayout = createChartContainer();
-        cancellationsChartLayout = createChartContainer();
+        reservationsChart = createChart();
+        cancellationsChart = createChart();
 
-        Div cardReservations = createCard("Zrealizowane Wizyty", reservationsChartLayout);
-        Div cardCancellations = createCard("Anulowane Wizyty", cancellationsChartLayout);
+        Div cardReservations = createCard("Zrealizowane Wizyty", reservationsChart);
+        Div cardCancellations = createCard("Anulowane Wizyty", cancellationsChart);
 
-        dashboardLayout.add(cardReservations, cardCancellations);
+        Div cardHeatmap = createCard("Popyt w tygodniu (kwadranse)", createHeatmapPanel());
+        cardHeatmap.getStyle().set("flex-basis", "100%");
+
+        dashboardLayout.add(cardReservations, cardCancellations, cardHeatmap);
 
         add(title, toolbar, dashboardLayout);
 
@@ -75,8 +103,12 @@ public class AdminStatsView extends VerticalLayout {
         startDate = new DatePicker("Od");
         endDate = new DatePicker("Do");
 
-        startDate.addValueChangeListener(e -> refreshCharts());
-        endDate.addValueChangeListener(e -> refreshCharts());
+        startDate.addValueChangeListener(e -> {
+            if (!settingRange) refreshCharts();
+        });
+        endDate.addValueChangeListener(e -> {
+            if (!settingRange) refreshCharts();
+        });
 
         Button btn7Days = new Button("7 Dni", e -> setRange(LocalDate.now().minusDays(6), LocalDate.now()));
         Button btn30Days = new Button("30 Dni", e -> setRange(LocalDate.now().minusDays(29), LocalDate.now()));
@@ -86,11 +118,18 @@ public class AdminStatsView extends VerticalLayout {
             setRange(firstDay, now);
         });
 
+        Button btnYear = new Button("Rok", e -> setRange(LocalDate.now().minusYears(1).plusDays(1), LocalDate.now()));
+
         btn7Days.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
         btn30Days.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
         btnThisMonth.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        btnYear.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+
+        bucketInfo = new Span();
+        bucketInfo.getStyle().set("color", "#888");
+        bucketInfo.getStyle().set("font-size", "0.9em");
 
-        HorizontalLayout toolbar = new HorizontalLayout(startDate, endDate, btn7Days, btn30Days, btnThisMonth);
+        HorizontalLayout toolbar = new HorizontalLayout(startDate, endDate, btn7Days, btn30Days, btnThisMonth, btnYear, bucketInfo);
         toolbar.setAlignItems(Alignment.BASELINE);
         toolbar.addClassName("toolbar");
         toolbar.getStyle().set("background-color", "white");
@@ -102,7 +141,7 @@ public class AdminStatsView extends VerticalLayout {
         return toolbar;
     }
 
-    private Div createCard(String titleText, HorizontalLayout content) {
+    private Div createCard(String titleText, Component content) {
         Div card = new Div();
         card.getStyle().set("background-color", "white");
         card.getStyle().set("border-radius", "12px");
@@ -121,20 +160,51 @@ public class AdminStatsView extends VerticalLayout {
         return card;
     }
 
-    private HorizontalLayout createChartContainer() {
-        HorizontalLayout layout = new HorizontalLayout();
-        layout.setWidthFull();
-        layout.setHeight("250px");
-        layout.setAlignItems(Alignment.END);
-        layout.getStyle().set("overflow-x", "auto");
-        layout.getStyle().set("padding-bottom", "10px");
-        layout.getElement().executeJs("this.style.scrollbarWidth = 'thin';");
-        return layout;
+    private VerticalLayout createHeatmapPanel() {
+        SpecjalizacjaDTO all = new SpecjalizacjaDTO(0, "Wszystkie specjalizacje");
+        List<SpecjalizacjaDTO> specializations = new ArrayList<>();
+        specializations.add(all);
+        specializations.addAll(new AdminService().getAllSpecializations());
+
+        heatmapSpecialization = new Select<>();
+        heatmapSpecialization.setLabel("Specjalizacja");
+        heatmapSpecialization.setItems(specializations);
+        heatmapSpecialization.setValue(all);
+        heatmapSpecialization.addValueChangeListener(e -> refreshHeatmap());
+
+        heatmapMeasure = new RadioButtonGroup<>();
+        heatmapMeasure.setLabel("Pokaż");
+        heatmapMeasure.setItems(MEASURE_BOOKED, MEASURE_CANCELLED, MEASURE_FREE);
+        heatmapMeasure.setValue(MEASURE_BOOKED);
+        heatmapMeasure.addValueChangeListener(e -> renderHeatmap());
+
+        HorizontalLayout controls = new HorizontalLayout(heatmapSpecialization, heatmapMeasure);
+        controls.setAlignItems(Alignment.BASELINE);
+
+        heatmapChart = createChart();
+
+        VerticalLayout panel = new VerticalLayout(controls, heatmapChart);
+        panel.setPadding(false);
+        panel.setSpacing(false);
+        return panel;
+    }
+
+    private Svg createChart() {
+        Svg chart = new Svg();
+        chart.getStyle().set("width", "100%");
+        chart.getStyle().set("display", "block");
+        return chart;
     }
 
     private void setRange(LocalDate start, LocalDate end) {
-        startDate.setValue(start);
-        endDate.setValue(end);
+        settingRange = true;
+        try {
+            startDate.setValue(start);
+            endDate.setValue(end);
+        } finally {
+            settingRange = false;
+        }
+        refreshCharts();
     }
 
     private void refreshCharts() {
@@ -143,64 +213,66 @@ public class AdminStatsView extends VerticalLayout {
 
         if (start == null || end == null || start.isAfter(end)) return;
 
-        Map<LocalDate, Integer> reservations = statsService.getDailyStats(start, end, false);
-        Map<LocalDate, Integer> cancellations = statsService.getDailyStats(start, end, true);
+        AdminStatsService.Bucket bucket = AdminStatsService.Bucket.forRange(start, end);
+        List<DailyStatsDTO> stats;
+        try {
+            stats = statsService.getStats(start, end, AdminStatsService.Breakdown.BRAK, bucket);
+        } catch (SQLException e) {
+            Notification.show("Błąd pobierania statystyk: " + e.getMessage());
+            return;
+        }
 
-        drawChart(reservationsChartLayout, reservations, "#1676f3");
-        drawChart(cancellationsChartLayout, cancellations, "#e63946");
+        bucketInfo.setText(switch (bucket) {
+            case DZIEN -> "Słupek = dzień";
+            case TYDZIEN -> "Słupek = tydzień";
+            case MIESIAC -> "Słupek = miesiąc";
+        });
+        reservationsChart.setSvg(SvgCharts.barChart(bars(stats, bucket, DailyStatsDTO::getBooked), "#1676f3"));
+        cancellationsChart.setSvg(SvgCharts.barChart(bars(stats, bucket, DailyStatsDTO::getCancelled), "#e63946"));
+        refreshHeatmap();
     }
 
-    private void drawChart(HorizontalLayout container, Map<LocalDate, Integer> data, String color) {
-        container.removeAll();
-
-        int maxValue = data.values().stream().mapToInt(v -> v).max().orElse(1);
-        if (maxValue == 0) maxValue = 1;
-
-        for (Map.Entry<LocalDate, Integer> entry : data.entrySet()) {
-            LocalDate date = entry.getKey();
-            int value = entry.getValue();
-
-            VerticalLayout barWrapper = new VerticalLayout();
-            barWrapper.setSpacing(false);
-            barWrapper.setPadding(false);
-            barWrapper.setJustifyContentMode(JustifyContentMode.END);
-            barWrapper.setAlignItems(Alignment.CENTER);
-            barWrapper.setWidth("40px");
-            barWrapper.getStyle().set("flex-shrink", "0");
-            barWrapper.setHeight("100%");
-
-            Span valueLabel = new Span(String.valueOf(value));
-            valueLabel.getStyle().set("font-size", "11px");
-            valueLabel.getStyle().set("font-weight", "bold");
-            valueLabel.getStyle().set("color", "#666");
-            valueLabel.getStyle().set("margin-bottom", "4px");
-            if (value == 0) valueLabel.setVisible(false);
-
-            Div bar = new Div();
-            bar.setWidth("20px");
-
-            double heightPercent = ((double) value / maxValue) * 100;
-            if (heightPercent < 2 && value == 0) heightPercent = 2;
-
-            bar.setHeight(heightPercent + "%");
-            bar.getStyle().set("background-color", color);
-            bar.getStyle().set("border-radius", "4px 4px 0 0");
-            bar.getStyle().set("transition", "all 0.3s ease");
+    private void refreshHeatmap() {
+        LocalDate start = startDate.getValue();
+        LocalDate end = endDate.getValue();
+        SpecjalizacjaDTO specialization = heatmapSpecialization.getValue();
 
-            bar.setTitle(date.toString() + ": " + value);
+        if (start == null || end == null || start.isAfter(end) || specialization == null) return;
 
+        try {
+            heatmap = statsService.getDemandHeatmap(start, end, specialization.getId());
+        } catch (SQLException e) {
+            Notification.show("Błąd pobierania mapy popytu: " + e.getMessage());
+            return;
+        }
+        renderHeatmap();
+    }
 
-            if (value == 0) {
-                bar.getStyle().set("background-color", "#e0e0e0");
-            }
+    private void renderHeatmap() {
+        if (heatmap == null) return;
 
-            Span dateLabel = new Span(date.getDayOfMonth() + "." + date.getMonthValue());
-            dateLabel.getStyle().set("font-size", "9px");
-            dateLabel.getStyle().set("color", "#888");
-            dateLabel.getStyle().set("margin-top", "6px");
+        heatmapChart.setSvg(switch (heatmapMeasure.getValue()) {
+            case MEASURE_CANCELLED -> SvgCharts.heatmap(heatmap, heatmap::getCancellationRatio, "#e63946");
+            case MEASURE_FREE -> SvgCharts.heatmap(heatmap, heatmap::getFreeRatio, "#2a9d8f");
+            default -> SvgCharts.heatmap(heatmap, heatmap::getBookingRatio, "#1676f3");
+        });
+    }
 
-            barWrapper.add(valueLabel, bar, dateLabel);
-            container.add(barWrapper);
+    private static List<SvgCharts.Bar> bars(List<DailyStatsDTO> stats, AdminStatsService.Bucket bucket,
+                                            ToIntFunction<DailyStatsDTO> value) {
+        List<SvgCharts.Bar> bars = new ArrayList<>();
+        for (DailyStatsDTO row : stats) {
+            LocalDate date = row.getData();
+            String label = bucket == AdminStatsService.Bucket.MIESIAC
+                    ? date.getMonthValue() + "." + date.getYear()
+                    : date.getDayOfMonth() + "." + date.getMonthValue();
+            String title = switch (bucket) {
+                case DZIEN -> date.toString();
+                case TYDZIEN -> "Tydzień od " + date;
+                case MIESIAC -> YearMonth.from(date).toString();
+            };
+            bars.add(new SvgCharts.Bar(label, title, value.applyAsInt(row)));
         }
+        return bars;
     }
-}
\ No newline at end of file
+}
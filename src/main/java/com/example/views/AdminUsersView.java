@@ -10,7 +10,6 @@ import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.grid.Grid;
-import com.vaadin.flow.component.grid.dataview.GridListDataView;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.Icon;
@@ -24,6 +23,9 @@ import com.vaadin.flow.component.textfield.EmailField;
 import com.vaadin.flow.component.textfield.PasswordField;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.timepicker.TimePicker;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.PageTitle;
@@ -32,6 +34,10 @@ import com.vaadin.flow.router.Route;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 @Route(value = "admin-users", layout = MainLayout.class)
 @PageTitle("Zarządzanie Użytkownikami")
@@ -42,7 +48,9 @@ public class AdminUsersView extends VerticalLayout {
 
     private TextField searchField;
     private ComboBox<String> roleFilter;
-    private GridListDataView<UserDTO> dataView;
+    // Pozycja w siatce -> ostatni wiersz przed nią; pozwala pobierać kolejne strony po kluczu zamiast OFFSET
+    private final TreeMap<Integer, UserDTO> pageCursors = new TreeMap<>();
+    private String cursorSortKey;
 
     public AdminUsersView() {
         UserSession currentUser = UserSession.getLoggedInUser();
@@ -57,11 +65,7 @@ public class AdminUsersView extends VerticalLayout {
         HorizontalLayout toolbar = createToolbar();
         add(new H2("Lista Użytkowników"), toolbar, grid);
 
-        try {
-            refreshGrid();
-        } catch (SQLException e) {
-            Notification.show("Błąd pobierania danych: " + e.getMessage());
-        }
+        grid.setItems(this::fetchUsers);
     }
 
     private HorizontalLayout createToolbar() {
@@ -70,13 +74,13 @@ public class AdminUsersView extends VerticalLayout {
         searchField.setPrefixComponent(new Icon(VaadinIcon.SEARCH));
         searchField.setClearButtonVisible(true);
         searchField.setValueChangeMode(ValueChangeMode.LAZY);
-        searchField.addValueChangeListener(e -> updateFilter());
+        searchField.addValueChangeListener(e -> refreshGrid());
 
         roleFilter = new ComboBox<>();
         roleFilter.setPlaceholder("Filtruj wg roli");
         roleFilter.setItems("Wszyscy", "Lekarz", "Rejestracja", "Admin", "Pacjent");
         roleFilter.setValue("Wszyscy");
-        roleFilter.addValueChangeListener(e -> updateFilter());
+        roleFilter.addValueChangeListener(e -> refreshGrid());
 
         Button addBtn = new Button("Dodaj pracownika", VaadinIcon.PLUS.create());
         addBtn.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
@@ -91,8 +95,8 @@ public class AdminUsersView extends VerticalLayout {
         grid.setSizeFull();
         grid.setColumns();
 
-        grid.addColumn(UserDTO::getImie).setHeader("Imię").setSortable(true).setAutoWidth(true);
-        grid.addColumn(UserDTO::getNazwisko).setHeader("Nazwisko").setSortable(true).setAutoWidth(true);
+        grid.addColumn(UserDTO::getImie).setHeader("Imię").setSortProperty(AdminService.UserSort.IMIE.name()).setAutoWidth(true);
+        grid.addColumn(UserDTO::getNazwisko).setHeader("Nazwisko").setSortProperty(AdminService.UserSort.NAZWISKO.name()).setAutoWidth(true);
 
         grid.addColumn(new ComponentRenderer<>(user -> {
             HorizontalLayout layout = new HorizontalLayout();
@@ -125,7 +129,7 @@ public class AdminUsersView extends VerticalLayout {
         })).setHeader("Email").setAutoWidth(true);
 
         grid.addColumn(UserDTO::getTelefon).setHeader("Telefon").setAutoWidth(true);
-        grid.addColumn(UserDTO::getRola).setHeader("Stanowisko").setSortable(true).setAutoWidth(true);
+        grid.addColumn(UserDTO::getRola).setHeader("Stanowisko").setSortProperty(AdminService.UserSort.ROLA.name()).setAutoWidth(true);
 
         grid.addColumn(new ComponentRenderer<>(user -> {
             HorizontalLayout layout = new HorizontalLayout();
@@ -165,36 +169,45 @@ public class AdminUsersView extends VerticalLayout {
         })).setHeader("Zarządzanie").setAutoWidth(true);
     }
 
-    private void refreshGrid() throws SQLException {
-        dataView = grid.setItems(adminService.getAllUsers());
-        updateFilter();
+    private void refreshGrid() {
+        pageCursors.clear();
+        grid.getDataProvider().refreshAll();
     }
 
-    private void updateFilter() {
-        if (dataView == null) return;
+    private Stream<UserDTO> fetchUsers(Query<UserDTO, Void> query) {
+        AdminService.UserSort sort = AdminService.UserSort.NAZWISKO;
+        boolean descending = false;
+        List<QuerySortOrder> sortOrders = query.getSortOrders();
+        if (!sortOrders.isEmpty()) {
+            sort = AdminService.UserSort.valueOf(sortOrders.get(0).getSorted());
+            descending = sortOrders.get(0).getDirection() == SortDirection.DESCENDING;
+        }
 
-        dataView.addFilter(user -> {
-            String searchTerm = searchField.getValue().trim();
-            boolean matchesSearch = true;
+        String sortKey = sort + (descending ? " DESC" : " ASC");
+        if (!sortKey.equals(cursorSortKey)) {
+            pageCursors.clear();
+            cursorSortKey = sortKey;
+        }
 
-            if (!searchTerm.isEmpty()) {
-                String lowerTerm = searchTerm.toLowerCase();
-                boolean matchesName = user.getImie().toLowerCase().contains(lowerTerm);
-                boolean matchesSurname = user.getNazwisko().toLowerCase().contains(lowerTerm);
-                boolean matchesEmail = user.getEmail().toLowerCase().contains(lowerTerm);
-                boolean matchesPhone = user.getTelefon() != null && user.getTelefon().contains(lowerTerm);
+        String role = roleFilter.getValue();
+        if ("Wszyscy".equals(role)) role = null;
 
-                matchesSearch = matchesName || matchesSurname || matchesEmail || matchesPhone;
-            }
+        // Najbliższy znany kursor przed żądaną pozycją; resztę dystansu pokonuje mały OFFSET
+        Map.Entry<Integer, UserDTO> cursor = pageCursors.floorEntry(query.getOffset());
+        UserDTO after = cursor != null ? cursor.getValue() : null;
+        int skip = query.getOffset() - (cursor != null ? cursor.getKey() : 0);
 
-            String selectedRole = roleFilter.getValue();
-            boolean matchesRole = true;
-            if (selectedRole != null && !"Wszyscy".equals(selectedRole)) {
-                matchesRole = selectedRole.equals(user.getRola());
+        try {
+            List<UserDTO> page = adminService.findUsers(searchField.getValue(), role, sort, descending,
+                    after, skip, query.getLimit());
+            if (!page.isEmpty()) {
+                pageCursors.put(query.getOffset() + page.size(), page.get(page.size() - 1));
             }
-
-            return matchesSearch && matchesRole;
-        });
+            return page.stream();
+        } catch (SQLException e) {
+            Notification.show("Błąd pobierania danych: " + e.getMessage());
+            return Stream.empty();
+        }
     }
 
     private void openEditHoursDialog(UserDTO doctor) {
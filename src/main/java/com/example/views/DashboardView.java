@@ -3,10 +3,17 @@ package com.example.views;
 import com.example.data.HarmonogramDTO;
 import com.example.security.UserSession;
 import com.example.services.DoctorService;
+import com.example.services.PendingQueue;
 import com.example.services.ReceptionService;
+import com.example.services.ScheduleChange;
+import com.example.services.ScheduleChanges;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.dataview.GridListDataView;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Paragraph;
@@ -19,7 +26,10 @@ import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Route(value = "panel", layout = MainLayout.class)
@@ -30,7 +40,16 @@ public class DashboardView extends VerticalLayout {
     private final DoctorService doctorService = new DoctorService();
 
     private Grid<HarmonogramDTO> receptionGrid;
+    private GridListDataView<HarmonogramDTO> receptionItems;
     private Grid<HarmonogramDTO> patientActionGrid;
+    private Paragraph patientEmptyInfo;
+    private Grid<HarmonogramDTO> todayGrid;
+    private Paragraph doctorEmptyInfo;
+
+    // Które zmiany z innych sesji/węzłów dotyczą tego pulpitu i jak go odświeżyć
+    private Predicate<ScheduleChange> relevantChange;
+    private Runnable refresh;
+    private Runnable changesSubscription;
 
     public DashboardView() {
         UserSession user = UserSession.getLoggedInUser();
@@ -54,6 +73,30 @@ public class DashboardView extends VerticalLayout {
         }
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        UI ui = attachEvent.getUI();
+        if (receptionGrid != null) {
+            subscribeReceptionQueue(ui);
+            return;
+        }
+        if (relevantChange == null) return;
+        changesSubscription = ScheduleChanges.subscribe(change -> {
+            if (relevantChange.test(change)) {
+                ui.access(refresh::run);
+            }
+        });
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (changesSubscription != null) {
+            changesSubscription.run();
+            changesSubscription = null;
+        }
+        receptionItems = null;
+    }
+
     private void createReceptionDashboard() {
         add(new H3("Wizyty oczekujące na akceptację Rejestracji"));
         add(new Paragraph("Zatwierdź termin, aby przekazać go do ostatecznego potwierdzenia przez pacjenta."));
@@ -77,7 +120,38 @@ public class DashboardView extends VerticalLayout {
         }).setHeader("Decyzja");
 
         add(receptionGrid);
-        refreshReceptionGrid();
+    }
+
+    // Kolejka przychodzi z PendingQueue: stan przy podłączeniu, potem pojedyncze wstawienia/usunięcia
+    private void subscribeReceptionQueue(UI ui) {
+        try {
+            PendingQueue.Subscription subscription = PendingQueue.subscribe(delta -> ui.access(() -> applyReceptionDelta(delta)));
+            receptionItems = receptionGrid.setItems(new ArrayList<>(subscription.snapshot()));
+            receptionItems.setIdentifierProvider(HarmonogramDTO::getIdTerminu);
+            changesSubscription = subscription.cancel();
+        } catch (SQLException e) {
+            Notification.show("Błąd pobierania danych: " + e.getMessage());
+        }
+    }
+
+    private void applyReceptionDelta(PendingQueue.Delta delta) {
+        if (receptionItems == null) return;
+        HarmonogramDTO existing = receptionItems.getItems()
+                .filter(dto -> dto.getIdTerminu() == delta.terminId())
+                .findFirst().orElse(null);
+        if (existing != null) {
+            receptionItems.removeItem(existing);
+        }
+        if (delta.removed()) return;
+
+        HarmonogramDTO next = receptionItems.getItems()
+                .filter(dto -> PendingQueue.ORDER.compare(dto, delta.item()) > 0)
+                .findFirst().orElse(null);
+        if (next != null) {
+            receptionItems.addItemBefore(delta.item(), next);
+        } else {
+            receptionItems.addItem(delta.item());
+        }
     }
 
     private void handleReceptionDecision(int terminId, boolean accepted) {
@@ -90,20 +164,13 @@ public class DashboardView extends VerticalLayout {
                 receptionService.updateAppointmentStatus(terminId, "Anulowana");
                 Notification.show("Rezerwacja została odrzucona.").addThemeVariants(NotificationVariant.LUMO_CONTRAST);
             }
-            refreshReceptionGrid();
+            // Własną decyzję widać od razu; inne pulpity dostaną usunięcie z PendingQueue
+            applyReceptionDelta(new PendingQueue.Delta(terminId, null));
         } catch (SQLException e) {
             Notification.show("Błąd: " + e.getMessage());
         }
     }
 
-    private void refreshReceptionGrid() {
-        try {
-            receptionGrid.setItems(receptionService.getPendingReservations());
-        } catch (SQLException e) {
-            Notification.show("Błąd pobierania danych: " + e.getMessage());
-        }
-    }
-
     private void createPatientDashboard(int patientId) {
         add(new H3("Wizyty wymagające Twojego potwierdzenia"));
         add(new Paragraph("Rejestracja zaakceptowała termin. Kliknij 'Potwierdź', aby sfinalizować wizytę."));
@@ -125,8 +192,12 @@ public class DashboardView extends VerticalLayout {
             return new HorizontalLayout(confirmBtn, cancelBtn);
         }).setHeader("Twoja decyzja");
 
-        add(patientActionGrid);
+        patientEmptyInfo = new Paragraph("Brak wizyt wymagających Twojej uwagi.");
+        add(patientActionGrid, patientEmptyInfo);
         refreshPatientGrid(patientId);
+
+        relevantChange = change -> change.concernsPatient(patientId);
+        refresh = () -> refreshPatientGrid(patientId);
     }
 
     private void handlePatientDecision(int terminId, boolean confirmed, int patientId) {
@@ -156,10 +227,7 @@ public class DashboardView extends VerticalLayout {
             patientActionGrid.setItems(actionRequired);
 
             patientActionGrid.setVisible(!actionRequired.isEmpty());
-
-            if (actionRequired.isEmpty()) {
-                add(new Paragraph("Brak wizyt wymagających Twojej uwagi."));
-            }
+            patientEmptyInfo.setVisible(actionRequired.isEmpty());
 
         } catch (SQLException e) {
             Notification.show("Błąd pobierania danych: " + e.getMessage());
@@ -167,9 +235,9 @@ public class DashboardView extends VerticalLayout {
     }
 
     private void createDoctorDashboard(int doctorId) {
-        add(new H3("Dzisiejsze wizyty (" + java.time.LocalDate.now() + ")"));
+        add(new H3("Dzisiejsze wizyty (" + LocalDate.now() + ")"));
 
-        Grid<HarmonogramDTO> todayGrid = new Grid<>();
+        todayGrid = new Grid<>();
         todayGrid.addColumn(HarmonogramDTO::getGodzina).setHeader("Godzina").setAutoWidth(true);
         todayGrid.addColumn(dto -> dto.getImiePacjenta() + " " + dto.getNazwiskoPacjenta())
                 .setHeader("Pacjent").setAutoWidth(true);
@@ -194,16 +262,23 @@ public class DashboardView extends VerticalLayout {
             return btn;
         }).setHeader("Akcja");
 
-        add(todayGrid);
+        doctorEmptyInfo = new Paragraph("Brak pacjentów na dzisiaj.");
+        add(todayGrid, doctorEmptyInfo);
+        refreshDoctorGrid(doctorId);
+
+        relevantChange = change -> change.concernsDoctor(doctorId, LocalDate.now(), LocalDate.now());
+        refresh = () -> refreshDoctorGrid(doctorId);
+    }
 
+    private void refreshDoctorGrid(int doctorId) {
         try {
-            List<HarmonogramDTO> all = doctorService.getSchedule(doctorId, java.time.LocalDate.now());
+            List<HarmonogramDTO> all = doctorService.getSchedule(doctorId, LocalDate.now());
             List<HarmonogramDTO> patients = all.stream()
                     .filter(d -> !"Wolny".equals(d.getStatus()))
                     .collect(Collectors.toList());
 
             todayGrid.setItems(patients);
-            if(patients.isEmpty()) add(new Paragraph("Brak pacjentów na dzisiaj."));
+            doctorEmptyInfo.setVisible(patients.isEmpty());
         } catch (SQLException e) {
             Notification.show("Błąd: " + e.getMessage());
         }
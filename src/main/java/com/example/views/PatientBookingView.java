@@ -12,20 +12,24 @@ import com.vaadin.flow.component.datepicker.DatePicker;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.H4;
 import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.FlexLayout;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.timepicker.TimePicker;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Route(value = "patient-booking", layout = MainLayout.class)
 @PageTitle("Umów wizytę")
@@ -37,6 +41,12 @@ public class PatientBookingView extends VerticalLayout {
     private ComboBox<UserDTO> doctorSelect;
     private DatePicker datePicker;
     private FlexLayout slotsLayout;
+    private TimePicker windowStart;
+    private TimePicker windowEnd;
+    private FlexLayout firstSlotsLayout;
+
+    private static final int FIRST_SLOTS_LIMIT = 10;
+    private static final DateTimeFormatter SLOT_FORMAT = DateTimeFormatter.ofPattern("dd.MM HH:mm");
 
     public PatientBookingView() {
         UserSession user = UserSession.getLoggedInUser();
@@ -64,7 +74,21 @@ public class PatientBookingView extends VerticalLayout {
         slotsLayout.setFlexWrap(FlexLayout.FlexWrap.WRAP);
         slotsLayout.getStyle().set("gap", "10px");
 
-        add(specializationSelect, doctorSelect, datePicker, slotsLayout);
+        windowStart = new TimePicker("Od godziny");
+        windowStart.setStep(Duration.ofMinutes(15));
+        windowEnd = new TimePicker("Do godziny");
+        windowEnd.setStep(Duration.ofMinutes(15));
+
+        firstSlotsLayout = new FlexLayout();
+        firstSlotsLayout.setFlexWrap(FlexLayout.FlexWrap.WRAP);
+        firstSlotsLayout.getStyle().set("gap", "10px");
+
+        add(specializationSelect,
+                new H4("Najbliższe wolne terminy"),
+                new HorizontalLayout(windowStart, windowEnd),
+                firstSlotsLayout,
+                new H4("Lub wybierz lekarza i dzień"),
+                doctorSelect, datePicker, slotsLayout);
 
         loadData();
         setupListeners();
@@ -88,18 +112,18 @@ public class PatientBookingView extends VerticalLayout {
 
             if (e.getValue() != null) {
                 try {
-                    List<UserDTO> allDoctors = receptionService.getAllDoctors();
-                    List<UserDTO> filtered = allDoctors.stream()
-                            .filter(d -> e.getValue().equals(d.getSpecjalizacja()))
-                            .collect(Collectors.toList());
-                    doctorSelect.setItems(filtered);
+                    doctorSelect.setItems(receptionService.getDoctorsBySpecialization(e.getValue()));
                     doctorSelect.setEnabled(true);
                 } catch (SQLException ex) {
                     Notification.show("Błąd: " + ex.getMessage());
                 }
             }
+            loadFirstSlots();
         });
 
+        windowStart.addValueChangeListener(e -> loadFirstSlots());
+        windowEnd.addValueChangeListener(e -> loadFirstSlots());
+
         doctorSelect.addValueChangeListener(e -> {
             datePicker.clear();
             datePicker.setEnabled(e.getValue() != null);
@@ -117,29 +141,57 @@ public class PatientBookingView extends VerticalLayout {
         if (doctor == null || date == null) return;
 
         try {
-            List<HarmonogramDTO> schedule = receptionService.getScheduleForDoctor(doctor.getId(), date);
+            List<HarmonogramDTO> freeSlots = receptionService.getFreeSlots(doctor.getId(), date);
 
-            if (schedule.isEmpty()) {
-                slotsLayout.add(new Span("Brak terminów w tym dniu."));
+            if (freeSlots.isEmpty()) {
+                slotsLayout.add(new Span("Brak wolnych terminów w tym dniu."));
                 return;
             }
 
-            for (HarmonogramDTO slot : schedule) {
-                if ("Wolny".equalsIgnoreCase(slot.getStatus())) {
-                    Button slotBtn = new Button(slot.getGodzina().toString());
-                    slotBtn.addThemeVariants(ButtonVariant.LUMO_CONTRAST);
-                    slotBtn.addClickListener(ev -> openReasonDialog(slot));
-                    slotsLayout.add(slotBtn);
-                }
+            for (HarmonogramDTO slot : freeSlots) {
+                Button slotBtn = new Button(slot.getGodzina().toString());
+                slotBtn.addThemeVariants(ButtonVariant.LUMO_CONTRAST);
+                slotBtn.addClickListener(ev -> openReasonDialog(slot));
+                slotsLayout.add(slotBtn);
             }
         } catch (SQLException e) {
             Notification.show("Błąd pobierania grafiku: " + e.getMessage());
         }
     }
 
+    private void loadFirstSlots() {
+        firstSlotsLayout.removeAll();
+        String specialization = specializationSelect.getValue();
+        if (specialization == null) return;
+
+        try {
+            // Rezerwacje od jutra, tak jak w wyborze daty
+            List<HarmonogramDTO> slots = receptionService.findFirstAvailableSlots(
+                    specialization,
+                    LocalDate.now().plusDays(1).atStartOfDay(),
+                    windowStart.getValue(),
+                    windowEnd.getValue(),
+                    FIRST_SLOTS_LIMIT);
+
+            if (slots.isEmpty()) {
+                firstSlotsLayout.add(new Span("Brak wolnych terminów."));
+                return;
+            }
+
+            for (HarmonogramDTO slot : slots) {
+                Button slotBtn = new Button(slot.getData().atTime(slot.getGodzina()).format(SLOT_FORMAT) + " - " + slot.getLekarz());
+                slotBtn.addThemeVariants(ButtonVariant.LUMO_CONTRAST);
+                slotBtn.addClickListener(ev -> openReasonDialog(slot));
+                firstSlotsLayout.add(slotBtn);
+            }
+        } catch (SQLException e) {
+            Notification.show("Błąd wyszukiwania terminów: " + e.getMessage());
+        }
+    }
+
     private void openReasonDialog(HarmonogramDTO slot) {
         Dialog dialog = new Dialog();
-        dialog.setHeaderTitle("Potwierdzenie rezerwacji: " + slot.getGodzina());
+        dialog.setHeaderTitle("Potwierdzenie rezerwacji: " + slot.getData() + " " + slot.getGodzina());
 
         ComboBox<String> reasonCombo = new ComboBox<>("Powód wizyty");
         reasonCombo.setWidthFull();
@@ -148,7 +200,7 @@ public class PatientBookingView extends VerticalLayout {
         customReason.setVisible(false);
 
         try {
-            Map<Integer, String> reasons = receptionService.getVisitReasons(doctorSelect.getValue().getId());
+            Map<Integer, String> reasons = receptionService.getVisitReasons(slot.getIdLekarza());
             reasonCombo.setItems(reasons.values());
 
             final Map<Integer, String> finalReasons = reasons;
@@ -174,7 +226,7 @@ public class PatientBookingView extends VerticalLayout {
                     }
 
                     receptionService.bookAppointment(
-                            slot.getIdTerminu(),
+                            slot,
                             UserSession.getLoggedInUser().getId(),
                             null, null, null, null, null, null, // Dane osobowe puste (już są w bazie)
                             reasonId,
@@ -186,6 +238,7 @@ public class PatientBookingView extends VerticalLayout {
                             .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
                     dialog.close();
                     loadSlots();
+                    loadFirstSlots();
 
                 } catch (Exception ex) {
                     Notification.show("Błąd: " + ex.getMessage());
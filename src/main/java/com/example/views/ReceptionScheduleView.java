@@ -4,8 +4,12 @@ import com.example.data.BookingResult;
 import com.example.data.HarmonogramDTO;
 import com.example.data.UserDTO;
 import com.example.services.ReceptionService;
+import com.example.services.ScheduleChanges;
 import com.example.security.UserSession;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.combobox.ComboBox;
@@ -34,6 +38,7 @@ import java.time.temporal.ChronoField;
 import java.util.List;
 import java.util.Map;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 @Route(value = "reception-schedule", layout = MainLayout.class)
 @PageTitle("Harmonogram Lekarza")
@@ -47,6 +52,7 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
     private H2 headerTitle;
 
     private int currentDoctorId;
+    private Runnable changesSubscription;
 
     public ReceptionScheduleView() {
         UserSession user = UserSession.getLoggedInUser();
@@ -103,6 +109,27 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
         add(headerLayout, navigationBar, scheduleContainer);
     }
 
+    /** Rezerwacja lub zmiana grafiku tego lekarza w oglądanym tygodniu - z dowolnego węzła - przeładowuje widok. */
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        if (scheduleContainer == null) return;
+        UI ui = attachEvent.getUI();
+        // Filtr w ui.access - pola widoku czytane tylko pod blokadą sesji
+        changesSubscription = ScheduleChanges.subscribe(change -> ui.access(() -> {
+            if (change.concernsDoctor(currentDoctorId, currentWeekStart, currentWeekStart.plusDays(6))) {
+                loadSchedule();
+            }
+        }));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (changesSubscription != null) {
+            changesSubscription.run();
+            changesSubscription = null;
+        }
+    }
+
     @Override
     public void setParameter(BeforeEvent event, Integer doctorId) {
         if (headerTitle == null || doctorId == null) return;
@@ -129,15 +156,22 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM");
         weekRangeLabel.setText(currentWeekStart.format(formatter) + " - " + weekEnd.format(formatter));
 
+        Map<LocalDate, List<HarmonogramDTO>> week;
+        try {
+            week = receptionService.getScheduleForDoctor(currentDoctorId, currentWeekStart, weekEnd);
+        } catch (SQLException e) {
+            week = null;
+        }
+
         for (int i = 0; i < 7; i++) {
             LocalDate dayDate = currentWeekStart.plusDays(i);
-            VerticalLayout dayColumn = createDayColumn(dayDate);
+            VerticalLayout dayColumn = createDayColumn(dayDate, week != null ? week.get(dayDate) : null);
             scheduleContainer.add(dayColumn);
             scheduleContainer.setFlexGrow(1, dayColumn);
         }
     }
 
-    private VerticalLayout createDayColumn(LocalDate date) {
+    private VerticalLayout createDayColumn(LocalDate date, List<HarmonogramDTO> slots) {
         VerticalLayout column = new VerticalLayout();
         column.setPadding(false);
         column.setSpacing(true);
@@ -161,20 +195,16 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
         headerBox.add(daySpan, dateSpan);
         column.add(headerBox);
 
-        try {
-            List<HarmonogramDTO> slots = receptionService.getScheduleForDoctor(currentDoctorId, date);
-
-            if (slots.isEmpty()) {
-                Div emptyInfo = new Div(new Span("-"));
-                emptyInfo.getStyle().set("text-align", "center").set("color", "#999");
-                column.add(emptyInfo);
-            } else {
-                for (HarmonogramDTO slot : slots) {
-                    column.add(createSlotCard(slot));
-                }
-            }
-        } catch (SQLException e) {
+        if (slots == null) {
             column.add(new Span("Błąd!"));
+        } else if (slots.isEmpty()) {
+            Div emptyInfo = new Div(new Span("-"));
+            emptyInfo.getStyle().set("text-align", "center").set("color", "#999");
+            column.add(emptyInfo);
+        } else {
+            for (HarmonogramDTO slot : slots) {
+                column.add(createSlotCard(slot));
+            }
         }
 
         return column;
@@ -235,9 +265,15 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
         ComboBox<UserDTO> patientCombo = new ComboBox<>("Szukaj pacjenta");
         patientCombo.setWidthFull();
         patientCombo.setItemLabelGenerator(u -> u.getImie() + " " + u.getNazwisko() + " (" + u.getPesel() + ")");
-        try {
-            patientCombo.setItems(receptionService.getAllPatients());
-        } catch (SQLException e) { }
+        patientCombo.setPageSize(20);
+        patientCombo.setItems(query -> {
+            try {
+                return receptionService.searchPatients(query.getFilter().orElse(""), query.getOffset(), query.getLimit()).stream();
+            } catch (SQLException e) {
+                Notification.show("Błąd wyszukiwania pacjentów: " + e.getMessage());
+                return Stream.empty();
+            }
+        });
         existingPatientLayout.add(patientCombo);
 
         FormLayout newPatientForm = new FormLayout();
@@ -313,14 +349,14 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
                 if ("Wybierz z listy".equals(modeSelect.getValue())) {
 
                     result = receptionService.bookAppointment(
-                            slot.getIdTerminu(), patientCombo.getValue().getId(),
+                            slot, patientCombo.getValue().getId(),
                             null, null, null, null, null, null,
                             reasonId, customNote,
                             "Potwierdzona"
                     );
                 } else {
                     result = receptionService.bookAppointment(
-                            slot.getIdTerminu(), null,
+                            slot, null,
                             imieField.getValue(), nazwiskoField.getValue(), peselField.getValue(),
                             telField.getValue(), emailField.getValue(), adresField.getValue(),
                             reasonId, customNote,
@@ -475,10 +511,7 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
             }
 
             try {
-                List<HarmonogramDTO> daySlots = receptionService.getScheduleForDoctor(currentDoctorId, selectedDate);
-                List<HarmonogramDTO> freeSlots = daySlots.stream()
-                        .filter(s -> "Wolny".equalsIgnoreCase(s.getStatus()))
-                        .toList();
+                List<HarmonogramDTO> freeSlots = receptionService.getFreeSlots(currentDoctorId, selectedDate);
 
                 if (freeSlots.isEmpty()) {
                     Notification.show("Brak wolnych terminów w tym dniu.");
@@ -501,7 +534,7 @@ public class ReceptionScheduleView extends VerticalLayout implements HasUrlParam
             }
 
             try {
-                receptionService.rescheduleAppointment(reservationId, selectedSlot.getIdTerminu());
+                receptionService.rescheduleAppointment(reservationId, selectedSlot);
                 Notification.show("Termin zmieniony pomyślnie!").addThemeVariants(NotificationVariant.LUMO_SUCCESS);
                 dialog.close();
                 loadSchedule();
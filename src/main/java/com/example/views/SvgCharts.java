@@ -0,0 +1,142 @@
+package com.example.views;
+
+import com.example.data.HeatmapDTO;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Wykresy panelu statystyk jako jeden element SVG składany na serwerze - liczba komponentów
+ * nie rośnie z liczbą słupków, a do przeglądarki idzie jeden napis zamiast drzewa Div/Span.
+ */
+final class SvgCharts {
+
+    /** Słupek: podpis pod osią, opis w dymku (title) i wartość. */
+    record Bar(String label, String title, int value) {}
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 250;
+    private static final int TOP = 16;
+    private static final int BOTTOM = 22;
+    // Tyle podpisów osi mieści się czytelnie; przy większej liczbie słupków co n-ty
+    private static final int MAX_LABELS = 16;
+    private static final int MAX_VALUE_LABELS = 31;
+
+    private SvgCharts() {
+    }
+
+    static String barChart(List<Bar> bars, String color) {
+        StringBuilder svg = new StringBuilder(256 + bars.size() * 160);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(WIDTH).append(' ').append(HEIGHT)
+                .append("\" width=\"100%\" height=\"").append(HEIGHT).append("\" font-family=\"sans-serif\">");
+        if (bars.isEmpty()) {
+            return svg.append("</svg>").toString();
+        }
+
+        int max = Math.max(1, bars.stream().mapToInt(Bar::value).max().orElse(1));
+        double slot = (double) WIDTH / bars.size();
+        double barWidth = Math.max(1, Math.min(20, slot * 0.6));
+        double plotHeight = HEIGHT - TOP - BOTTOM;
+        int labelEvery = (bars.size() + MAX_LABELS - 1) / MAX_LABELS;
+        boolean valueLabels = bars.size() <= MAX_VALUE_LABELS;
+
+        for (int i = 0; i < bars.size(); i++) {
+            Bar bar = bars.get(i);
+            double center = slot * i + slot / 2;
+            double height = bar.value() == 0 ? plotHeight * 0.02 : plotHeight * bar.value() / max;
+            double y = TOP + plotHeight - height;
+
+            svg.append("<rect x=\"").append(fmt(center - barWidth / 2)).append("\" y=\"").append(fmt(y))
+                    .append("\" width=\"").append(fmt(barWidth)).append("\" height=\"").append(fmt(height))
+                    .append("\" rx=\"3\" fill=\"").append(bar.value() == 0 ? "#e0e0e0" : color).append("\">")
+                    .append("<title>").append(escape(bar.title())).append(": ").append(bar.value()).append("</title></rect>");
+
+            if (valueLabels && bar.value() > 0) {
+                svg.append("<text x=\"").append(fmt(center)).append("\" y=\"").append(fmt(y - 4))
+                        .append("\" text-anchor=\"middle\" font-size=\"11\" font-weight=\"bold\" fill=\"#666\">")
+                        .append(bar.value()).append("</text>");
+            }
+            if (i % labelEvery == 0) {
+                svg.append("<text x=\"").append(fmt(center)).append("\" y=\"").append(HEIGHT - 6)
+                        .append("\" text-anchor=\"middle\" font-size=\"9\" fill=\"#888\">")
+                        .append(escape(bar.label())).append("</text>");
+            }
+        }
+        return svg.append("</svg>").toString();
+    }
+
+    /** Wartość komórki mapy popytu w [0, 1]; ujemna = brak danych. */
+    interface Ratio {
+        double at(int day, int quarter);
+    }
+
+    private static final String[] DAY_NAMES = {"Pon", "Wt", "Śr", "Czw", "Pt", "Sob", "Niedz"};
+    private static final int LABEL_WIDTH = 44;
+    private static final int HOUR_ROW = 18;
+    private static final int CELL_HEIGHT = 24;
+
+    /**
+     * Mapa tydzień × kwadrans - tylko kwadranse, w których cokolwiek oferowano lub rezerwowano.
+     * Nasycenie koloru = {@code ratio}; w dymku liczby, z których wyszedł udział.
+     */
+    static String heatmap(HeatmapDTO heatmap, Ratio ratio, String color) {
+        int first = HeatmapDTO.QUARTERS;
+        int last = -1;
+        for (int d = 0; d < HeatmapDTO.DAYS; d++) {
+            for (int q = 0; q < HeatmapDTO.QUARTERS; q++) {
+                if (heatmap.getOffered(d, q) + heatmap.getCancelled(d, q) > 0) {
+                    first = Math.min(first, q);
+                    last = Math.max(last, q);
+                }
+            }
+        }
+
+        int height = HOUR_ROW + HeatmapDTO.DAYS * CELL_HEIGHT;
+        StringBuilder svg = new StringBuilder(20_000);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(WIDTH).append(' ').append(height)
+                .append("\" width=\"100%\" font-family=\"sans-serif\">");
+        if (last < 0) {
+            return svg.append("<text x=\"").append(WIDTH / 2).append("\" y=\"").append(height / 2)
+                    .append("\" text-anchor=\"middle\" font-size=\"12\" fill=\"#888\">Brak danych w wybranym zakresie</text></svg>")
+                    .toString();
+        }
+
+        double cellWidth = (double) (WIDTH - LABEL_WIDTH) / (last - first + 1);
+        for (int q = first; q <= last; q++) {
+            if (q % 4 == 0) {
+                svg.append("<text x=\"").append(fmt(LABEL_WIDTH + (q - first) * cellWidth)).append("\" y=\"12\" font-size=\"9\" fill=\"#888\">")
+                        .append(q / 4).append(":00</text>");
+            }
+        }
+        for (int d = 0; d < HeatmapDTO.DAYS; d++) {
+            double y = HOUR_ROW + d * CELL_HEIGHT;
+            svg.append("<text x=\"0\" y=\"").append(fmt(y + CELL_HEIGHT / 2.0 + 4)).append("\" font-size=\"11\" fill=\"#555\">")
+                    .append(DAY_NAMES[d]).append("</text>");
+            for (int q = first; q <= last; q++) {
+                double value = ratio.at(d, q);
+                svg.append("<rect x=\"").append(fmt(LABEL_WIDTH + (q - first) * cellWidth)).append("\" y=\"").append(fmt(y))
+                        .append("\" width=\"").append(fmt(cellWidth - 1)).append("\" height=\"").append(CELL_HEIGHT - 2);
+                if (value < 0) {
+                    svg.append("\" fill=\"#f0f0f0\">");
+                } else {
+                    svg.append("\" fill=\"").append(color).append("\" fill-opacity=\"").append(String.format(Locale.ROOT, "%.2f", 0.08 + 0.92 * value)).append("\">");
+                }
+                svg.append("<title>").append(DAY_NAMES[d]).append(' ').append(String.format("%02d:%02d", q / 4, q % 4 * 15))
+                        .append(" - oferowane ").append(heatmap.getOffered(d, q))
+                        .append(", zajęte ").append(heatmap.getBooked(d, q))
+                        .append(", anulowane ").append(heatmap.getCancelled(d, q));
+                if (value >= 0) svg.append(" (").append(Math.round(value * 100)).append("%)");
+                svg.append("</title></rect>");
+            }
+        }
+        return svg.append("</svg>").toString();
+    }
+
+    static String fmt(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
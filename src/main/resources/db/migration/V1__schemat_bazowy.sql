@@ -0,0 +1,70 @@
+-- Schemat bazowy przychodni - tylko dla nowej, pustej bazy. Odtworzony z kodu aplikacji, a nie
+-- zrzucony z działającej instalacji, więc typy i długości kolumn (np. CHAR(11) dla PESEL-u) są
+-- przybliżone. Bazy założone ręcznie przed migracjami dostają wersję bazową 1 (baselineOnMigrate
+-- w SchemaService) i tego skryptu w ogóle nie wykonują - zostaje ich własny schemat.
+
+CREATE TABLE IF NOT EXISTS Specjalizacja (
+    ID_Specjalizacji SERIAL PRIMARY KEY,
+    Specjalizacja    VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS Uzytkownik (
+    ID_Uzytkownika SERIAL PRIMARY KEY,
+    Imie           VARCHAR(50)  NOT NULL,
+    Nazwisko       VARCHAR(50)  NOT NULL,
+    Login          VARCHAR(50)  NOT NULL UNIQUE,
+    Haslo          VARCHAR(100) NOT NULL,
+    Numer_telefonu VARCHAR(16),
+    Email          VARCHAR(100),
+    Rola           VARCHAR(20)  NOT NULL,
+    Czy_aktywny    BOOLEAN      NOT NULL DEFAULT TRUE
+);
+
+CREATE TABLE IF NOT EXISTS Administrator (
+    ID_Uzytkownika INT PRIMARY KEY REFERENCES Uzytkownik (ID_Uzytkownika)
+);
+
+CREATE TABLE IF NOT EXISTS PracownikRejestracji (
+    ID_Uzytkownika INT PRIMARY KEY REFERENCES Uzytkownik (ID_Uzytkownika)
+);
+
+CREATE TABLE IF NOT EXISTS Pacjent (
+    ID_Uzytkownika INT PRIMARY KEY REFERENCES Uzytkownik (ID_Uzytkownika),
+    PESEL          CHAR(11),
+    Adres          VARCHAR(200)
+);
+
+CREATE TABLE IF NOT EXISTS Lekarz (
+    ID_Uzytkownika   INT PRIMARY KEY REFERENCES Uzytkownik (ID_Uzytkownika),
+    Start_pracy      TIME,
+    Koniec_pracy     TIME,
+    ID_Specjalizacji INT REFERENCES Specjalizacja (ID_Specjalizacji)
+);
+
+CREATE TABLE IF NOT EXISTS PowodWizyty (
+    ID_PowodWizyty   SERIAL PRIMARY KEY,
+    Powod_wizyty     VARCHAR(200) NOT NULL,
+    ID_Specjalizacji INT REFERENCES Specjalizacja (ID_Specjalizacji)
+);
+
+CREATE TABLE IF NOT EXISTS Termin (
+    ID_Terminu SERIAL PRIMARY KEY,
+    ID_Lekarza INT  NOT NULL REFERENCES Lekarz (ID_Uzytkownika),
+    Data       DATE NOT NULL,
+    Godzina    TIME NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS Rezerwacja (
+    ID_Rezerwacji     SERIAL PRIMARY KEY,
+    ID_Terminu        INT         NOT NULL REFERENCES Termin (ID_Terminu),
+    ID_Pacjenta       INT         NOT NULL REFERENCES Pacjent (ID_Uzytkownika),
+    Status_rezerwacji VARCHAR(50) NOT NULL
+);
+
+-- Klucz główny ID_Rezerwacji jest zarazem indeksem dla złączeń Rezerwacja -> Wizyta
+CREATE TABLE IF NOT EXISTS Wizyta (
+    ID_Rezerwacji  INT PRIMARY KEY REFERENCES Rezerwacja (ID_Rezerwacji),
+    ID_PowodWizyty INT REFERENCES PowodWizyty (ID_PowodWizyty),
+    Opis_Powodu    TEXT,
+    Notatka        TEXT
+);
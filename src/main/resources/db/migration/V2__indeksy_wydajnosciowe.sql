@@ -0,0 +1,40 @@
+-- Indeksy wspierające zapytania serwisów. IF NOT EXISTS, bo część baz ma je już
+-- z wcześniejszego skryptu startowego. Listę oczekiwanych indeksów sprawdza przy starcie
+-- SchemaService.verifyIndexes - nowy indeks dopisz także tam.
+-- Tylko indeksy nieunikalne - nie mogą się nie udać przez dane. Ograniczenia unikalności są w V5,
+-- żeby zdublowane wiersze w starej bazie nie blokowały wydajnościowych.
+
+-- Grafik lekarza i wyszukiwanie najbliższego wolnego terminu (skan per lekarz po dacie i godzinie)
+CREATE INDEX IF NOT EXISTS idx_termin_lekarz_data_godzina ON Termin (ID_Lekarza, Data, Godzina);
+
+-- Sprawdzenie, czy termin jest zajęty (NOT EXISTS / LEFT JOIN po ID_Terminu)
+CREATE INDEX IF NOT EXISTS idx_rezerwacja_termin ON Rezerwacja (ID_Terminu);
+
+-- Historia i rezerwacje pacjenta
+CREATE INDEX IF NOT EXISTS idx_rezerwacja_pacjent ON Rezerwacja (ID_Pacjenta);
+
+-- Lista "do potwierdzenia" w rejestracji: mały indeks częściowy zamiast skanu wszystkich rezerwacji
+CREATE INDEX IF NOT EXISTS idx_rezerwacja_do_potwierdzenia ON Rezerwacja (ID_Terminu)
+    WHERE Status_rezerwacji = 'Wymaga potwierdzenia przez rejestracje';
+
+-- Lekarze danej specjalizacji
+CREATE INDEX IF NOT EXISTS idx_lekarz_specjalizacja ON Lekarz (ID_Specjalizacji);
+
+-- Wyszukiwarka pacjentów: prefiks nazwiska/imienia (bez rozróżniania wielkości liter), PESEL-u i telefonu.
+-- text_pattern_ops pozwala użyć indeksu dla LIKE 'abc%' niezależnie od collation bazy.
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_nazwisko_prefix ON Uzytkownik (lower(Nazwisko) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_imie_prefix ON Uzytkownik (lower(Imie) text_pattern_ops);
+-- PESEL i telefon rzutowane na text, żeby indeks działał tak samo dla CHAR i VARCHAR.
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_telefon_prefix ON Uzytkownik ((CAST(Numer_telefonu AS text)) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_pacjent_pesel_prefix ON Pacjent ((CAST(PESEL AS text)) text_pattern_ops);
+
+-- Lista użytkowników w panelu admina: stronicowanie po kluczu (kolumna sortowania, ID)
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_nazwisko_id ON Uzytkownik (Nazwisko, ID_Uzytkownika);
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_imie_id ON Uzytkownik (Imie, ID_Uzytkownika);
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_rola_nazwisko_id ON Uzytkownik (Rola, Nazwisko, ID_Uzytkownika);
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_email_prefix ON Uzytkownik (lower(Email) text_pattern_ops);
+
+-- UserValidator.exists: sprawdzenie zajętości e-maila, telefonu i PESEL-u (porównanie równościowe).
+-- Login ma już indeks z ograniczenia UNIQUE, PESEL - z uq_pacjent_pesel (V5).
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_email ON Uzytkownik (Email);
+CREATE INDEX IF NOT EXISTS idx_uzytkownik_telefon ON Uzytkownik (Numer_telefonu);
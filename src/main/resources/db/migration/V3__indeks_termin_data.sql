@@ -0,0 +1,3 @@
+-- Statystyki i raporty po zakresie dat dla całej przychodni (bez filtra po lekarzu),
+-- których nie obsłuży indeks (ID_Lekarza, Data, Godzina).
+CREATE INDEX IF NOT EXISTS idx_termin_data ON Termin (Data);
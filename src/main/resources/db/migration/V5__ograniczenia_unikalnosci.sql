@@ -0,0 +1,42 @@
+-- Ograniczenia unikalności, osobno od indeksów wydajnościowych (V2): w bazie sprzed migracji mogą być
+-- zdublowane wiersze, a wtedy nie da się założyć indeksu UNIQUE. Zamiast ogólnego błędu CREATE INDEX
+-- migracja wypisuje konkretne wiersze do poprawienia i nie zmienia danych. Aplikacja startuje dalej
+-- (SchemaService.verifyIndexes zgłosi brak indeksów), a V5 przejdzie przy następnym starcie po poprawce.
+
+DO $$
+DECLARE
+    pesele     text;
+    rezerwacje text;
+BEGIN
+    SELECT string_agg(format('PESEL %s -> pacjenci %s', d.PESEL, d.pacjenci), '; ')
+    INTO pesele
+    FROM (SELECT PESEL, string_agg(ID_Uzytkownika::text, ', ' ORDER BY ID_Uzytkownika) AS pacjenci
+          FROM Pacjent
+          WHERE PESEL IS NOT NULL
+          GROUP BY PESEL
+          HAVING COUNT(*) > 1
+          ORDER BY PESEL
+          LIMIT 50) d;
+
+    SELECT string_agg(format('termin %s -> rezerwacje %s', d.ID_Terminu, d.rezerwacje), '; ')
+    INTO rezerwacje
+    FROM (SELECT ID_Terminu, string_agg(ID_Rezerwacji::text, ', ' ORDER BY ID_Rezerwacji) AS rezerwacje
+          FROM Rezerwacja
+          WHERE Status_rezerwacji <> 'Anulowana'
+          GROUP BY ID_Terminu
+          HAVING COUNT(*) > 1
+          ORDER BY ID_Terminu
+          LIMIT 50) d;
+
+    IF pesele IS NOT NULL OR rezerwacje IS NOT NULL THEN
+        RAISE EXCEPTION 'V5: zdublowane wiersze blokują ograniczenia unikalności (pierwsze 50 z każdego rodzaju). '
+                        'Zdublowany PESEL: %. Kilka aktywnych rezerwacji na termin: %.',
+            COALESCE(pesele, 'brak'), COALESCE(rezerwacje, 'brak');
+    END IF;
+END $$;
+
+-- Najwyżej jedna aktywna (nieanulowana) rezerwacja na termin - gwarancja przy równoczesnych rezerwacjach
+CREATE UNIQUE INDEX IF NOT EXISTS uq_rezerwacja_termin_aktywna ON Rezerwacja (ID_Terminu) WHERE Status_rezerwacji <> 'Anulowana';
+
+-- PESEL jest unikalny także w bazie, nie tylko w aplikacji (UserValidator.exists korzysta z tego indeksu)
+CREATE UNIQUE INDEX IF NOT EXISTS uq_pacjent_pesel ON Pacjent (PESEL);
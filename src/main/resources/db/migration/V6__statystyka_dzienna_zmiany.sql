@@ -0,0 +1,60 @@
+-- Wyzwalacze z V4 dopisywały do Statystyka_dzienna przez ON CONFLICT DO UPDATE, więc każda rezerwacja
+-- blokowała do końca transakcji wiersz (dzień, lekarz, status) - równoległe rezerwacje u jednego lekarza
+-- w jednym dniu czekały na siebie. Teraz wyzwalacze tylko dopisują zmiany ze znakiem do tabeli bez klucza,
+-- a AdminStatsService.compactRollup (StatsRollupJob) co jakiś czas przenosi je sumami do podsumowania.
+-- Odczyty statystyk sumują obie tabele.
+
+CREATE TABLE IF NOT EXISTS Statystyka_dzienna_zmiany (
+    Data              DATE        NOT NULL,
+    ID_Lekarza        INT         NOT NULL,
+    Status_rezerwacji VARCHAR(50) NOT NULL,
+    Liczba            INT         NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_statystyka_dzienna_zmiany_data ON Statystyka_dzienna_zmiany (Data);
+
+CREATE OR REPLACE FUNCTION statystyka_dzienna_rezerwacje() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO Statystyka_dzienna_zmiany (Data, ID_Lekarza, Status_rezerwacji, Liczba)
+        SELECT t.Data, t.ID_Lekarza, n.Status_rezerwacji, COUNT(*)
+        FROM nowe n JOIN Termin t ON t.ID_Terminu = n.ID_Terminu
+        GROUP BY 1, 2, 3;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO Statystyka_dzienna_zmiany (Data, ID_Lekarza, Status_rezerwacji, Liczba)
+        SELECT t.Data, t.ID_Lekarza, s.Status_rezerwacji, -COUNT(*)
+        FROM stare s JOIN Termin t ON t.ID_Terminu = s.ID_Terminu
+        GROUP BY 1, 2, 3;
+    ELSE
+        -- Zmiana statusu lub przełożenie: -1 dla starego klucza, +1 dla nowego; bez zmian nic nie zapisuje
+        INSERT INTO Statystyka_dzienna_zmiany (Data, ID_Lekarza, Status_rezerwacji, Liczba)
+        SELECT t.Data, t.ID_Lekarza, z.Status_rezerwacji, SUM(z.Zmiana)
+        FROM (SELECT ID_Terminu, Status_rezerwacji, 1 AS Zmiana FROM nowe
+              UNION ALL
+              SELECT ID_Terminu, Status_rezerwacji, -1 FROM stare) z
+        JOIN Termin t ON t.ID_Terminu = z.ID_Terminu
+        GROUP BY 1, 2, 3
+        HAVING SUM(z.Zmiana) <> 0;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION statystyka_dzienna_wyczysc() RETURNS trigger AS $$
+BEGIN
+    TRUNCATE Statystyka_dzienna, Statystyka_dzienna_zmiany;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION statystyka_dzienna_termin() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO Statystyka_dzienna_zmiany (Data, ID_Lekarza, Status_rezerwacji, Liczba)
+    SELECT k.Data, k.ID_Lekarza, r.Status_rezerwacji, k.Znak * COUNT(*)
+    FROM Rezerwacja r
+    CROSS JOIN (VALUES (OLD.Data, OLD.ID_Lekarza, -1), (NEW.Data, NEW.ID_Lekarza, 1)) AS k(Data, ID_Lekarza, Znak)
+    WHERE r.ID_Terminu = NEW.ID_Terminu
+    GROUP BY k.Data, k.ID_Lekarza, r.Status_rezerwacji, k.Znak;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,139 @@
+package com.example.perf;
+
+import com.example.security.PasswordHasher;
+import com.example.services.DatabaseConnectionService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zestaw danych dla benchmarków: lekarze, pacjenci, terminy +-60 dni od dziś i rezerwacje
+ * z realistycznym rozkładem statusów. Wszystkie wiersze mają loginy "bench.*", więc łatwo je
+ * odróżnić od danych aplikacji; seed jest zakładany tylko raz (kolejne wywołania nic nie robią).
+ */
+public class BenchmarkDataset {
+
+    public static final String DOCTOR_LOGIN_PREFIX = "bench.lekarz.";
+    public static final String PATIENT_LOGIN_PREFIX = "bench.pacjent.";
+
+    private static final int SPECIALIZATIONS = 8;
+
+    public static void ensure(int doctors, int patients) throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            if (count(conn, "SELECT COUNT(*) FROM Uzytkownik WHERE Login LIKE '" + DOCTOR_LOGIN_PREFIX + "%'") > 0) {
+                return;
+            }
+            System.out.println(">>> [BENCH] Zakładanie danych: lekarzy=" + doctors + ", pacjentów=" + patients);
+            String hash = PasswordHasher.hash("bench1234");
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT setseed(0.42)");
+                stmt.executeUpdate("INSERT INTO Specjalizacja (Specjalizacja) " +
+                        "SELECT 'bench-spec-' || g FROM generate_series(1, " + SPECIALIZATIONS + ") g");
+                stmt.executeUpdate("INSERT INTO PowodWizyty (Powod_wizyty, ID_Specjalizacji) " +
+                        "SELECT p.nazwa, s.ID_Specjalizacji FROM Specjalizacja s " +
+                        "CROSS JOIN (VALUES ('Konsultacja'), ('Kontrola'), ('Wynik badań')) AS p(nazwa) " +
+                        "WHERE s.Specjalizacja LIKE 'bench-spec-%'");
+
+                insertUsers(conn, DOCTOR_LOGIN_PREFIX, "Lekarz", "7", doctors, hash);
+                stmt.executeUpdate("INSERT INTO Lekarz (ID_Uzytkownika, Start_pracy, Koniec_pracy, ID_Specjalizacji) " +
+                        "SELECT u.ID_Uzytkownika, TIME '08:00', TIME '16:00', s.ID_Specjalizacji " +
+                        "FROM Uzytkownik u " +
+                        "JOIN (SELECT ID_Specjalizacji, row_number() OVER (ORDER BY ID_Specjalizacji) - 1 AS nr " +
+                        "      FROM Specjalizacja WHERE Specjalizacja LIKE 'bench-spec-%') s " +
+                        "  ON s.nr = u.ID_Uzytkownika % " + SPECIALIZATIONS + " " +
+                        "WHERE u.Login LIKE '" + DOCTOR_LOGIN_PREFIX + "%'");
+
+                insertUsers(conn, PATIENT_LOGIN_PREFIX, "Pacjent", "6", patients, hash);
+                stmt.executeUpdate("INSERT INTO Pacjent (ID_Uzytkownika, PESEL, Adres) " +
+                        "SELECT ID_Uzytkownika, '9' || lpad(substring(Login from " + (PATIENT_LOGIN_PREFIX.length() + 1) + "), 10, '0'), 'ul. Testowa 1' " +
+                        "FROM Uzytkownik WHERE Login LIKE '" + PATIENT_LOGIN_PREFIX + "%'");
+
+                // 32 sloty po 15 minut (08:00-16:00) w dni robocze
+                stmt.executeUpdate("INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                        "SELECT l.ID_Uzytkownika, d.dzien::date, TIME '08:00' + s.nr * INTERVAL '15 minutes' " +
+                        "FROM Lekarz l JOIN Uzytkownik u ON u.ID_Uzytkownika = l.ID_Uzytkownika " +
+                        "CROSS JOIN generate_series(CURRENT_DATE - 60, CURRENT_DATE + 60, INTERVAL '1 day') AS d(dzien) " +
+                        "CROSS JOIN generate_series(0, 31) AS s(nr) " +
+                        "WHERE u.Login LIKE '" + DOCTOR_LOGIN_PREFIX + "%' AND EXTRACT(ISODOW FROM d.dzien) < 6");
+
+                // Przeszłość: 70% zajętych (głównie odbyte), przyszłość: 40% (głównie potwierdzone)
+                stmt.executeUpdate("WITH p AS (SELECT ID_Uzytkownika, row_number() OVER (ORDER BY ID_Uzytkownika) - 1 AS nr " +
+                        "           FROM Uzytkownik WHERE Login LIKE '" + PATIENT_LOGIN_PREFIX + "%'), " +
+                        "t AS (SELECT t.ID_Terminu, t.Data < CURRENT_DATE AS przeszly, random() AS los, random() AS status, " +
+                        "             floor(random() * " + patients + ")::int AS nr " +
+                        "      FROM Termin t JOIN Uzytkownik u ON u.ID_Uzytkownika = t.ID_Lekarza " +
+                        "      WHERE u.Login LIKE '" + DOCTOR_LOGIN_PREFIX + "%') " +
+                        "INSERT INTO Rezerwacja (ID_Terminu, ID_Pacjenta, Status_rezerwacji) " +
+                        "SELECT t.ID_Terminu, p.ID_Uzytkownika, CASE " +
+                        "  WHEN t.przeszly AND t.status < 0.75 THEN 'Odbyta' " +
+                        "  WHEN t.przeszly AND t.status < 0.80 THEN 'Nieodbyta' " +
+                        "  WHEN t.przeszly THEN 'Anulowana' " +
+                        "  WHEN t.status < 0.60 THEN 'Potwierdzona' " +
+                        "  WHEN t.status < 0.75 THEN 'Wymaga potwierdzenia przez rejestracje' " +
+                        "  WHEN t.status < 0.85 THEN 'Wymaga potwierdzenia przez pacjenta' " +
+                        "  ELSE 'Anulowana' END " +
+                        "FROM t JOIN p ON p.nr = t.nr " +
+                        "WHERE t.los < CASE WHEN t.przeszly THEN 0.7 ELSE 0.4 END");
+
+                stmt.executeUpdate("INSERT INTO Wizyta (ID_Rezerwacji, ID_PowodWizyty, Opis_Powodu, Notatka) " +
+                        "SELECT r.ID_Rezerwacji, pw.ID_PowodWizyty, NULL, " +
+                        "       CASE WHEN r.Status_rezerwacji = 'Odbyta' THEN 'Pacjent bez zmian.' END " +
+                        "FROM Rezerwacja r " +
+                        "JOIN Termin t ON t.ID_Terminu = r.ID_Terminu " +
+                        "JOIN Lekarz l ON l.ID_Uzytkownika = t.ID_Lekarza " +
+                        "JOIN Uzytkownik u ON u.ID_Uzytkownika = l.ID_Uzytkownika " +
+                        "JOIN LATERAL (SELECT ID_PowodWizyty FROM PowodWizyty WHERE ID_Specjalizacji = l.ID_Specjalizacji " +
+                        "              ORDER BY ID_PowodWizyty LIMIT 1) pw ON TRUE " +
+                        "WHERE u.Login LIKE '" + DOCTOR_LOGIN_PREFIX + "%' AND r.Status_rezerwacji != 'Anulowana'");
+                stmt.execute("ANALYZE");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    public static List<Integer> ids(String loginPrefix) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT ID_Uzytkownika FROM Uzytkownik WHERE Login LIKE ? ORDER BY ID_Uzytkownika")) {
+            stmt.setString(1, loginPrefix + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static void insertUsers(Connection conn, String loginPrefix, String role, String phonePrefix,
+                                    int count, String hash) throws SQLException {
+        String sql = "INSERT INTO Uzytkownik (Imie, Nazwisko, Login, Haslo, Numer_telefonu, Email, Rola, Czy_aktywny) " +
+                "SELECT 'Jan', 'Bench' || g, ? || g, ?, ? || lpad(g::text, 8, '0'), ? || g || '@example.com', ?, TRUE " +
+                "FROM generate_series(1, ?) g";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, loginPrefix);
+            stmt.setString(2, hash);
+            stmt.setString(3, phonePrefix);
+            stmt.setString(4, loginPrefix);
+            stmt.setString(5, role);
+            stmt.setInt(6, count);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.perf;
+
+import com.example.data.HarmonogramDTO;
+import com.example.metrics.LatencyHistogram;
+import com.example.services.AvailabilityIndex;
+import com.example.services.DatabaseConnectionService;
+import com.example.services.ReceptionService;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Burza rezerwacji: {@code threads} wątków próbuje zarezerwować każdy z {@code slots} terminów
+ * (każdy wątek w innej kolejności). Poprawny wynik to dokładnie jedna aktywna rezerwacja na termin,
+ * {@code slots} sukcesów i reszta odrzuceń bez błędów. Wszystkie terminy to jeden lekarz i jeden dzień,
+ * więc przebieg pokazuje też, czy rezerwacje różnych terminów tego dnia nie czekają na siebie nawzajem.
+ * <p>
+ * {@code -Dsource=id} (domyślnie): terminy zakładane daleko w przyszłości i rezerwowane po ID_Terminu.
+ * {@code -Dsource=index}: jak w widokach - dzień w oknie {@link AvailabilityIndex}, wolne terminy z
+ * {@link ReceptionService#getFreeSlots} (z indeksu mają ID_Terminu = 0), brakujące wiersze w godzinach pracy
+ * lekarza zakładane przed przebiegiem. Po przebiegu usuwane są rezerwacje i terminy powstałe w teście.
+ * Uruchomienie: {@code mvn -Pperf compile exec:java -Dexec.mainClass=com.example.perf.BookingContentionBenchmark
+ * -Dthreads=32 -Dslots=50 [-Dsource=index]}
+ */
+public class BookingContentionBenchmark {
+
+    private static final LocalDate BENCH_DATE = LocalDate.of(2099, 1, 5);
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("threads", 32);
+        int slots = Integer.getInteger("slots", 50);
+
+        boolean viaIndex = "index".equalsIgnoreCase(System.getProperty("source", "id"));
+
+        ReceptionService service = new ReceptionService();
+        int patientId = firstId("SELECT ID_Uzytkownika FROM Pacjent ORDER BY ID_Uzytkownika LIMIT 1");
+        long lastTerminId = firstId("SELECT COALESCE(MAX(ID_Terminu), 0) FROM Termin");
+        long lastReservationId = firstId("SELECT COALESCE(MAX(ID_Rezerwacji), 0) FROM Rezerwacja");
+        int doctorId;
+        LocalDate date;
+        LocalDate lastDate;
+        List<HarmonogramDTO> targets;
+        if (viaIndex) {
+            doctorId = firstId("SELECT ID_Uzytkownika FROM Lekarz WHERE Start_pracy IS NOT NULL AND Koniec_pracy IS NOT NULL " +
+                    "ORDER BY Koniec_pracy - Start_pracy DESC, ID_Uzytkownika LIMIT 1");
+            date = LocalDate.now().plusDays(Integer.getInteger("days", 90) / 2);
+            while (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                date = date.plusDays(1);
+            }
+            lastDate = date;
+            createWorkingHourSlots(doctorId, date);
+            AvailabilityIndex.reconcile(Integer.getInteger("days", 90));
+            targets = service.getFreeSlots(doctorId, date).stream().limit(slots).toList();
+            System.out.println("indeks: " + AvailabilityIndex.getStats());
+            if (targets.isEmpty()) throw new IllegalStateException("Brak wolnych terminów lekarza " + doctorId + " w dniu " + date);
+        } else {
+            doctorId = firstId("SELECT ID_Uzytkownika FROM Lekarz ORDER BY ID_Uzytkownika LIMIT 1");
+            date = BENCH_DATE;
+            lastDate = BENCH_DATE.plusDays((slots - 1) / 96);
+            targets = new ArrayList<>();
+            for (int terminId : createSlots(doctorId, slots)) {
+                HarmonogramDTO slot = new HarmonogramDTO();
+                slot.setIdTerminu(terminId);
+                slot.setIdLekarza(doctorId);
+                targets.add(slot);
+            }
+        }
+        int slotCount = targets.size();
+
+        LatencyHistogram won = new LatencyHistogram();
+        LatencyHistogram lost = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                List<HarmonogramDTO> order = new ArrayList<>(targets);
+                Collections.shuffle(order);
+                executor.submit(() -> {
+                    startGate.await();
+                    for (HarmonogramDTO slot : order) {
+                        long started = System.nanoTime();
+                        try {
+                            service.bookAppointment(slot, patientId, null, null, null, null, null, null,
+                                    -1, "benchmark", "Potwierdzona");
+                            won.record(System.nanoTime() - started);
+                        } catch (ReceptionService.ValidationException e) {
+                            lost.record(System.nanoTime() - started);
+                        } catch (SQLException e) {
+                            errors.increment();
+                            System.err.println("!!! " + e.getSQLState() + " " + e.getMessage());
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            long started = System.nanoTime();
+            startGate.countDown();
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            LatencyHistogram.Snapshot w = won.snapshot();
+            LatencyHistogram.Snapshot l = lost.snapshot();
+            long attempts = w.getCount() + l.getCount() + errors.sum();
+            int doubleBooked = countDoubleBooked(doctorId, date, lastDate, lastReservationId);
+
+            System.out.printf("źródło=%s lekarz=%d dzień=%s wątki=%d terminy=%d prób=%d czas=%.2f s przepustowość=%.0f prób/s%n",
+                    viaIndex ? "index" : "id", doctorId, date, threads, slotCount, attempts, seconds, attempts / seconds);
+            System.out.printf("sukcesy=%d (p50=%.2f ms p99=%.2f ms)%n", w.getCount(), w.getP50Millis(), w.getP99Millis());
+            System.out.printf("odrzucenia=%d (p50=%.2f ms p99=%.2f ms)%n", l.getCount(), l.getP50Millis(), l.getP99Millis());
+            System.out.printf("błędy=%d, terminy z >1 aktywną rezerwacją=%d%n", errors.sum(), doubleBooked);
+            System.out.println("pula: " + DatabaseConnectionService.getPoolStats());
+
+            boolean correct = w.getCount() == slotCount && doubleBooked == 0 && errors.sum() == 0;
+            System.out.println(correct ? "OK" : "NIEPOPRAWNY WYNIK");
+            if (!correct) System.exit(1);
+        } finally {
+            executor.shutdownNow();
+            cleanUp(doctorId, date, lastDate, lastTerminId, lastReservationId);
+        }
+        System.exit(0);
+    }
+
+    private static int firstId(String sql) throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) throw new SQLException("Brak danych: " + sql);
+            return rs.getInt(1);
+        }
+    }
+
+    private static List<Integer> createSlots(int doctorId, int slots) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) VALUES (?, ?, ?) RETURNING ID_Terminu";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < slots; i++) {
+                stmt.setInt(1, doctorId);
+                stmt.setDate(2, Date.valueOf(BENCH_DATE.plusDays(i / 96)));
+                stmt.setTime(3, Time.valueOf(LocalTime.MIDNIGHT.plusMinutes(15L * (i % 96))));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Brakujące terminy lekarza w godzinach pracy danego dnia (tryb materializowany ich wymaga). */
+    private static void createWorkingHourSlots(int doctorId, LocalDate date) throws SQLException {
+        String sql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                "SELECT l.ID_Uzytkownika, ?, g.ts::time " +
+                "FROM Lekarz l " +
+                "CROSS JOIN generate_series(CAST(? AS date) + l.Start_pracy, CAST(? AS date) + l.Koniec_pracy - INTERVAL '15 minutes', INTERVAL '15 minutes') AS g(ts) " +
+                "WHERE l.ID_Uzytkownika = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM Termin t WHERE t.ID_Lekarza = l.ID_Uzytkownika AND t.Data = ? AND t.Godzina = g.ts::time)";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Date sqlDate = Date.valueOf(date);
+            stmt.setDate(1, sqlDate);
+            stmt.setDate(2, sqlDate);
+            stmt.setDate(3, sqlDate);
+            stmt.setInt(4, doctorId);
+            stmt.setDate(5, sqlDate);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int countDoubleBooked(int doctorId, LocalDate from, LocalDate to, long lastReservationId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM (SELECT r.ID_Terminu FROM Rezerwacja r JOIN Termin t ON t.ID_Terminu = r.ID_Terminu " +
+                "WHERE t.ID_Lekarza = ? AND t.Data BETWEEN ? AND ? AND r.Status_rezerwacji != 'Anulowana' " +
+                "AND r.ID_Terminu IN (SELECT ID_Terminu FROM Rezerwacja WHERE ID_Rezerwacji > ?) " +
+                "GROUP BY r.ID_Terminu HAVING COUNT(*) > 1) x";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, doctorId);
+            stmt.setDate(2, Date.valueOf(from));
+            stmt.setDate(3, Date.valueOf(to));
+            stmt.setLong(4, lastReservationId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /** Usuwa rezerwacje z przebiegu i terminy lekarza z tych dni założone w teście (także zmaterializowane). */
+    private static void cleanUp(int doctorId, LocalDate from, LocalDate to, long lastTerminId, long lastReservationId) throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            String reservations = "SELECT r.ID_Rezerwacji FROM Rezerwacja r JOIN Termin t ON t.ID_Terminu = r.ID_Terminu " +
+                    "WHERE t.ID_Lekarza = ? AND t.Data BETWEEN ? AND ? AND r.ID_Rezerwacji > ?";
+            for (String sql : new String[]{
+                    "DELETE FROM Wizyta WHERE ID_Rezerwacji IN (" + reservations + ")",
+                    "DELETE FROM Rezerwacja WHERE ID_Rezerwacji IN (" + reservations + ")"}) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, doctorId);
+                    stmt.setDate(2, Date.valueOf(from));
+                    stmt.setDate(3, Date.valueOf(to));
+                    stmt.setLong(4, lastReservationId);
+                    stmt.executeUpdate();
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM Termin WHERE ID_Lekarza = ? AND Data BETWEEN ? AND ? AND ID_Terminu > ?")) {
+                stmt.setInt(1, doctorId);
+                stmt.setDate(2, Date.valueOf(from));
+                stmt.setDate(3, Date.valueOf(to));
+                stmt.setLong(4, lastTerminId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.perf;
+
+import com.example.data.HarmonogramDTO;
+import com.example.metrics.LatencyHistogram;
+import com.example.services.AuthService;
+import com.example.services.DatabaseConnectionService;
+import com.example.services.DoctorService;
+import com.example.services.ReceptionService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Obciążenie bez interfejsu: wirtualni użytkownicy (wątki wirtualne) wołają serwisy bezpośrednio,
+ * tak jak robią to widoki Vaadin.
+ * <ul>
+ *     <li>pacjent - logowanie, przegląd grafiku lekarza, rezerwacja wolnego terminu;</li>
+ *     <li>rejestracja - lista oczekujących, potwierdzanie rezerwacji z grafiku lub przeniesienie na inny dzień;</li>
+ *     <li>lekarz - logowanie, grafik dnia, szczegóły wizyty i jej zakończenie.</li>
+ * </ul>
+ * Liczba użytkowników rośnie stopniami ({@code -Dsteps}); po każdym stopniu drukowana jest
+ * przepustowość, p50/p99, konflikty rezerwacji i błędy dla każdej operacji. Na końcu - największy
+ * stopień, który zmieścił się w {@code -Dp99TargetMs} i {@code -DmaxErrorRate}.
+ * <p>
+ * Działa na danych z {@link DatasetGenerator} (loginy z prefiksem {@code -Dprefix}, hasło {@code -Dpassword})
+ * i zmienia je - nie uruchamiać na bazie produkcyjnej.
+ * Uruchomienie: {@code mvn -Pperf compile exec:java -Dexec.mainClass=com.example.perf.ClinicLoadTest
+ * -Dsteps=10,50,100,200 -DstepSeconds=30 -Dmix=70,20,10 -DthinkMs=500}
+ */
+public class ClinicLoadTest {
+
+    private static final String PENDING = "Wymaga potwierdzenia przez rejestracje";
+    private static final String[] OPERATIONS = {
+            "login", "getScheduleForDoctor", "bookAppointment", "getPendingReservations",
+            "updateAppointmentStatus", "rescheduleAppointment", "getSchedule", "getVisitDetails", "completeVisit"
+    };
+
+    private record Account(int id, String login) {}
+
+    private final ReceptionService receptionService = new ReceptionService();
+    private final DoctorService doctorService = new DoctorService();
+    private final AuthService authService = new AuthService();
+
+    private final List<Account> doctors;
+    private final List<Account> patients;
+    private final String password;
+    private final long thinkMs;
+
+    private ClinicLoadTest(List<Account> doctors, List<Account> patients, String password, long thinkMs) {
+        this.doctors = doctors;
+        this.patients = patients;
+        this.password = password;
+        this.thinkMs = thinkMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String prefix = System.getProperty("prefix", "gen.");
+        int[] steps = parseInts(System.getProperty("steps", "10,50,100,200"));
+        int stepSeconds = Integer.getInteger("stepSeconds", 30);
+        int[] mix = parseInts(System.getProperty("mix", "70,20,10"));
+        double p99TargetMs = Double.parseDouble(System.getProperty("p99TargetMs", "500"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("maxErrorRate", "0.01"));
+
+        List<Account> doctors = accounts(prefix + "lekarz.%", Integer.MAX_VALUE);
+        List<Account> patients = accounts(prefix + "pacjent.%", Integer.getInteger("patientSample", 50_000));
+        if (doctors.isEmpty() || patients.isEmpty()) {
+            System.err.println("!!! [LOAD] Brak danych z prefiksem '" + prefix + "' - najpierw uruchom DatasetGenerator");
+            System.exit(1);
+        }
+        System.out.println(">>> [LOAD] lekarzy=" + doctors.size() + ", pacjentów=" + patients.size() +
+                ", stopnie=" + Arrays.toString(steps) + " x " + stepSeconds + " s, mix pacjent/rejestracja/lekarz=" +
+                Arrays.toString(mix));
+
+        ClinicLoadTest test = new ClinicLoadTest(doctors, patients,
+                System.getProperty("password", "haslo1234"), Long.getLong("thinkMs", 500L));
+
+        int capacity = 0;
+        for (int users : steps) {
+            StepResult result = test.runStep(users, mix, stepSeconds);
+            result.print();
+            if (result.p99Millis() <= p99TargetMs && result.errorRate() <= maxErrorRate) {
+                capacity = users;
+            } else {
+                System.out.println(">>> [LOAD] Stopień " + users + " przekroczył próg (p99 " + p99TargetMs +
+                        " ms, błędy " + maxErrorRate * 100 + "%) - koniec rampy");
+                break;
+            }
+        }
+        System.out.println(">>> [LOAD] Szacowana pojemność węzła: " + capacity + " jednoczesnych użytkowników");
+        System.exit(0);
+    }
+
+    // --- stopień rampy ---
+
+    private StepResult runStep(int users, int[] mix, int seconds) throws InterruptedException {
+        Map<String, OpStats> stats = new ConcurrentHashMap<>();
+        for (String op : OPERATIONS) stats.put(op, new OpStats());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        int mixTotal = mix[0] + mix[1] + mix[2];
+        AtomicInteger reported = new AtomicInteger();
+
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < users; u++) {
+                int roll = (2 * u + 1) * mixTotal / (2 * users);
+                Session session = new Session(stats, deadline, reported);
+                if (roll < mix[0]) {
+                    executor.submit(() -> session.loop(session::patient));
+                } else if (roll < mix[0] + mix[1]) {
+                    executor.submit(() -> session.loop(session::receptionist));
+                } else {
+                    executor.submit(() -> session.loop(session::doctor));
+                }
+            }
+        }
+        return new StepResult(users, (System.nanoTime() - started) / 1e9, stats);
+    }
+
+    @FunctionalInterface
+    private interface Workflow {
+        void run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Operation<T> {
+        T call() throws Exception;
+    }
+
+    /** Jeden wirtualny użytkownik: powtarza swój scenariusz z przerwą na "myślenie" aż do końca stopnia. */
+    private final class Session {
+        private final Map<String, OpStats> stats;
+        private final long deadline;
+        private final AtomicInteger reported;
+
+        Session(Map<String, OpStats> stats, long deadline, AtomicInteger reported) {
+            this.stats = stats;
+            this.deadline = deadline;
+            this.reported = reported;
+        }
+
+        void loop(Workflow workflow) {
+            while (System.nanoTime() < deadline) {
+                try {
+                    workflow.run();
+                } catch (Exception e) {
+                    // błąd jest już policzony przy operacji - scenariusz zaczyna się od nowa
+                }
+            }
+        }
+
+        void patient() throws Exception {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Account patient = patients.get(random.nextInt(patients.size()));
+            call("login", () -> authService.login(patient.login(), password));
+            think();
+
+            Account doctor = doctors.get(random.nextInt(doctors.size()));
+            HarmonogramDTO free = null;
+            for (int browse = 0; browse < 3 && free == null; browse++) {
+                LocalDate day = LocalDate.now().plusDays(random.nextInt(1, 15));
+                List<HarmonogramDTO> schedule = call("getScheduleForDoctor",
+                        () -> receptionService.getScheduleForDoctor(doctor.id(), day));
+                free = pick(schedule, "Wolny");
+                think();
+            }
+            if (free == null) return;
+
+            HarmonogramDTO slot = free;
+            call("bookAppointment", () -> receptionService.bookAppointment(slot, patient.id(),
+                    null, null, null, null, null, null, -1, "test obciążeniowy", PENDING));
+            think();
+        }
+
+        void receptionist() throws Exception {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextInt(5) == 0) {
+                call("getPendingReservations", receptionService::getPendingReservations);
+                think();
+            }
+
+            Account doctor = doctors.get(random.nextInt(doctors.size()));
+            LocalDate day = LocalDate.now().plusDays(random.nextInt(0, 15));
+            List<HarmonogramDTO> schedule = call("getScheduleForDoctor",
+                    () -> receptionService.getScheduleForDoctor(doctor.id(), day));
+            think();
+
+            HarmonogramDTO pending = pick(schedule, PENDING);
+            if (pending != null && random.nextInt(5) > 0) {
+                call("updateAppointmentStatus", () -> {
+                    receptionService.updateAppointmentStatus(pending.getIdTerminu(), "Potwierdzona");
+                    return null;
+                });
+            } else {
+                HarmonogramDTO booked = pending != null ? pending : pick(schedule, "Potwierdzona");
+                if (booked == null) return;
+                LocalDate otherDay = day.plusDays(random.nextInt(1, 8));
+                List<HarmonogramDTO> other = call("getScheduleForDoctor",
+                        () -> receptionService.getScheduleForDoctor(doctor.id(), otherDay));
+                HarmonogramDTO target = pick(other, "Wolny");
+                if (target == null) return;
+                call("rescheduleAppointment", () -> {
+                    receptionService.rescheduleAppointment(booked.getIdRezerwacji(), target);
+                    return null;
+                });
+            }
+            think();
+        }
+
+        void doctor() throws Exception {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Account doctor = doctors.get(random.nextInt(doctors.size()));
+            call("login", () -> authService.login(doctor.login(), password));
+            think();
+
+            LocalDate day = LocalDate.now().minusDays(random.nextInt(0, 7));
+            List<HarmonogramDTO> schedule = call("getSchedule", () -> doctorService.getSchedule(doctor.id(), day));
+            think();
+
+            HarmonogramDTO visit = pick(schedule, "Potwierdzona");
+            if (visit == null) return;
+            call("getVisitDetails", () -> doctorService.getVisitDetails(visit.getIdTerminu()));
+            think();
+            call("completeVisit", () -> {
+                doctorService.completeVisit(visit.getIdTerminu(), "Wizyta zakończona (test obciążeniowy).", "Odbyta");
+                return null;
+            });
+            think();
+        }
+
+        private <T> T call(String op, Operation<T> operation) throws Exception {
+            OpStats opStats = stats.get(op);
+            long started = System.nanoTime();
+            try {
+                T result = operation.call();
+                opStats.latency.record(System.nanoTime() - started);
+                return result;
+            } catch (ReceptionService.ValidationException e) {
+                // Ktoś był szybszy - to oczekiwany wynik rywalizacji, nie błąd
+                opStats.latency.record(System.nanoTime() - started);
+                opStats.conflicts.increment();
+                throw e;
+            } catch (Exception e) {
+                opStats.errors.increment();
+                if (reported.incrementAndGet() <= 5) {
+                    System.err.println("!!! [LOAD] " + op + ": " + e.getMessage());
+                }
+                throw e;
+            }
+        }
+
+        private void think() throws InterruptedException {
+            if (thinkMs > 0) {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(thinkMs / 2, thinkMs * 3 / 2 + 1));
+            }
+        }
+    }
+
+    private static HarmonogramDTO pick(List<HarmonogramDTO> schedule, String status) {
+        if (schedule == null) return null;
+        List<HarmonogramDTO> matching = new ArrayList<>();
+        for (HarmonogramDTO slot : schedule) {
+            if (status.equals(slot.getStatus())) matching.add(slot);
+        }
+        return matching.isEmpty() ? null : matching.get(ThreadLocalRandom.current().nextInt(matching.size()));
+    }
+
+    // --- wyniki ---
+
+    private static final class OpStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private record StepResult(int users, double seconds, Map<String, OpStats> stats) {
+
+        double p99Millis() {
+            double worst = 0;
+            for (OpStats op : stats.values()) worst = Math.max(worst, op.latency.snapshot().getP99Millis());
+            return worst;
+        }
+
+        double errorRate() {
+            long calls = 0;
+            long errors = 0;
+            for (OpStats op : stats.values()) {
+                calls += op.latency.getCount() + op.errors.sum();
+                errors += op.errors.sum();
+            }
+            return calls == 0 ? 0 : (double) errors / calls;
+        }
+
+        void print() {
+            System.out.printf("%n=== użytkowników=%d, czas=%.1f s ===%n", users, seconds);
+            System.out.printf("%-26s %9s %9s %9s %9s %9s %9s %9s%n",
+                    "operacja", "wywołań", "op/s", "p50 ms", "p99 ms", "max ms", "konflikty", "błędy");
+            long total = 0;
+            for (String name : OPERATIONS) {
+                OpStats op = stats.get(name);
+                LatencyHistogram.Snapshot s = op.latency.snapshot();
+                long calls = s.getCount() + op.errors.sum();
+                if (calls == 0) continue;
+                total += calls;
+                System.out.printf("%-26s %9d %9.1f %9.2f %9.2f %9.2f %9d %9d%n",
+                        name, calls, calls / seconds, s.getP50Millis(), s.getP99Millis(), s.getMaxMillis(),
+                        op.conflicts.sum(), op.errors.sum());
+            }
+            System.out.printf("razem: %.1f op/s, najgorsze p99=%.2f ms, błędy=%.2f%%%n",
+                    total / seconds, p99Millis(), errorRate() * 100);
+            System.out.println("pula: " + DatabaseConnectionService.getPoolStats());
+        }
+    }
+
+    // --- dane ---
+
+    private static List<Account> accounts(String loginPattern, int limit) throws SQLException {
+        List<Account> accounts = new ArrayList<>();
+        String sql = "SELECT ID_Uzytkownika, Login FROM Uzytkownik " +
+                "WHERE Login LIKE ? AND Czy_aktywny = TRUE ORDER BY ID_Uzytkownika LIMIT ?";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, loginPattern);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) accounts.add(new Account(rs.getInt(1), rs.getString(2)));
+            }
+        }
+        return accounts;
+    }
+
+    private static int[] parseInts(String csv) {
+        String[] parts = csv.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) values[i] = Integer.parseInt(parts[i].trim());
+        return values;
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.perf;
+
+import com.example.security.PasswordHasher;
+import com.example.services.DatabaseConnectionService;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generator syntetycznej przychodni w skali produkcyjnej: specjalizacje z powodami wizyt, lekarze,
+ * pacjenci, terminy w dni robocze oraz rezerwacje z wizytami. Wiersze trafiają do bazy przez
+ * {@code COPY ... FROM STDIN} (bez INSERT-ów wiersz po wierszu), terminy, rezerwacje i wizyty
+ * ładowane są równolegle porcjami lekarzy.
+ * <p>
+ * Identyfikatory są rezerwowane z sekwencji z góry, więc klucze obce liczone są po stronie Javy.
+ * Każdy lekarz ma własny generator losowy wyprowadzony z {@code seed}, dlatego ten sam seed daje
+ * identyczny zestaw danych niezależnie od liczby wątków.
+ * <p>
+ * Uruchomienie: {@code mvn -Pperf compile exec:java -Dexec.mainClass=com.example.perf.DatasetGenerator
+ * -Ddoctors=2000 -Dpatients=1000000 -DdaysBack=365 -DdaysAhead=90 -Dseed=42 -Dthreads=4}
+ * <p>
+ * Loginy mają prefiks {@code -Dprefix} (domyślnie "gen."); generator odmawia pracy, jeśli takie loginy już są.
+ */
+public class DatasetGenerator {
+
+    private static final int SLOT_MINUTES = 15;
+    private static final int FLUSH_BYTES = 1 << 16;
+
+    private static final String[] SPECIALIZATIONS = {
+            "Internista", "Kardiolog", "Dermatolog", "Pediatra", "Okulista", "Laryngolog",
+            "Neurolog", "Ortopeda", "Ginekolog", "Endokrynolog", "Psychiatra", "Urolog"
+    };
+    private static final String[] REASONS = {
+            "Konsultacja", "Wizyta kontrolna", "Omówienie wyników badań", "Przedłużenie recepty"
+    };
+    private static final String[] MALE_NAMES = {
+            "Jan", "Piotr", "Krzysztof", "Andrzej", "Tomasz", "Paweł", "Michał", "Marcin", "Jakub", "Adam",
+            "Łukasz", "Mateusz", "Kamil", "Wojciech", "Marek", "Grzegorz"
+    };
+    private static final String[] FEMALE_NAMES = {
+            "Anna", "Maria", "Katarzyna", "Małgorzata", "Agnieszka", "Barbara", "Ewa", "Magdalena", "Joanna", "Zofia",
+            "Monika", "Aleksandra", "Natalia", "Karolina", "Julia", "Marta"
+    };
+    private static final String[] SURNAMES = {
+            "Nowak", "Kowalski", "Wiśniewski", "Wójcik", "Kowalczyk", "Kamiński", "Lewandowski", "Zieliński",
+            "Szymański", "Woźniak", "Dąbrowski", "Kozłowski", "Jankowski", "Mazur", "Kwiatkowski", "Krawczyk",
+            "Piotrowski", "Grabowski", "Nowakowski", "Pawłowski", "Michalski", "Nowicki", "Adamczyk", "Dudek"
+    };
+    private static final String[] STREETS = {
+            "Długa", "Polna", "Leśna", "Słoneczna", "Krótka", "Szkolna", "Ogrodowa", "Lipowa", "Łąkowa", "Kościuszki"
+    };
+    private static final String[] CITIES = {
+            "Warszawa", "Kraków", "Łódź", "Wrocław", "Poznań", "Gdańsk", "Lublin", "Katowice"
+    };
+    private static final String[] NOTES = {
+            "Pacjent bez zmian.", "Zlecono badania kontrolne.", "Wystawiono receptę.", "Skierowanie do specjalisty."
+    };
+
+    private record Doctor(int index, int id, int specIndex, LocalTime start, int slotsPerDay,
+                          long firstSlotId, long firstReservationId) {}
+
+    /** Jedna wygenerowana pozycja grafiku; rezerwacja istnieje, gdy {@code status != null}. */
+    private record Slot(long slotId, LocalDate date, LocalTime time,
+                        long reservationId, int patientId, String status, int reasonId, String note) {
+        boolean reserved() {
+            return status != null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SlotSink {
+        void accept(Slot slot) throws SQLException;
+    }
+
+    private final int doctors;
+    private final int patients;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long seed;
+    private final int threads;
+    private final String prefix;
+
+    private int firstPatientId;
+    private int[] specIds;
+    private int[][] reasonIds;
+    private List<Doctor> doctorPlan;
+    private long totalSlots;
+    private long totalReservations;
+
+    public DatasetGenerator(int doctors, int patients, int daysBack, int daysAhead, long seed, int threads, String prefix) {
+        this.doctors = doctors;
+        this.patients = patients;
+        this.from = LocalDate.now().minusDays(daysBack);
+        this.to = LocalDate.now().plusDays(daysAhead);
+        this.seed = seed;
+        this.threads = Math.max(1, threads);
+        this.prefix = prefix;
+    }
+
+    public static void main(String[] args) throws Exception {
+        DatasetGenerator generator = new DatasetGenerator(
+                Integer.getInteger("doctors", 2000),
+                Integer.getInteger("patients", 1_000_000),
+                Integer.getInteger("daysBack", 365),
+                Integer.getInteger("daysAhead", 90),
+                Long.getLong("seed", 42L),
+                Integer.getInteger("threads", 4),
+                System.getProperty("prefix", "gen."));
+        generator.generate();
+        System.exit(0);
+    }
+
+    public void generate() throws Exception {
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM Uzytkownik WHERE Login LIKE ?")) {
+            stmt.setString(1, prefix + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    throw new IllegalStateException("Dane z prefiksem '" + prefix + "' już istnieją - użyj innego -Dprefix");
+                }
+            }
+        }
+
+        System.out.println(">>> [GENERATOR] lekarzy=" + doctors + ", pacjentów=" + patients +
+                ", zakres " + from + " - " + to + ", seed=" + seed + ", wątków=" + threads);
+        String hash = PasswordHasher.hash("haslo1234");
+
+        loadDictionaries();
+        loadUsers(hash);
+        planDoctors();
+
+        System.out.println(">>> [GENERATOR] Terminów=" + totalSlots + ", rezerwacji=" + totalReservations);
+
+        copyPerDoctor("COPY Termin (ID_Terminu, ID_Lekarza, Data, Godzina) FROM STDIN", "Termin",
+                (doctor, out) -> slot -> out.row(slot.slotId(), doctor.id(), slot.date(), slot.time()));
+        copyPerDoctor("COPY Rezerwacja (ID_Rezerwacji, ID_Terminu, ID_Pacjenta, Status_rezerwacji) FROM STDIN", "Rezerwacja",
+                (doctor, out) -> slot -> {
+                    if (slot.reserved()) out.row(slot.reservationId(), slot.slotId(), slot.patientId(), slot.status());
+                });
+        // Anulowanie usuwa wizytę (ReceptionService.updateAppointmentStatus) - anulowane rezerwacje jej nie mają
+        copyPerDoctor("COPY Wizyta (ID_Rezerwacji, ID_PowodWizyty, Opis_Powodu, Notatka) FROM STDIN", "Wizyta",
+                (doctor, out) -> slot -> {
+                    if (slot.reserved() && !"Anulowana".equals(slot.status())) out.row(slot.reservationId(), slot.reasonId(), null, slot.note());
+                });
+
+        try (Connection conn = DatabaseConnectionService.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+        System.out.println(">>> [GENERATOR] Gotowe w " + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    // --- słowniki i użytkownicy ---
+
+    private void loadDictionaries() throws SQLException {
+        specIds = new int[SPECIALIZATIONS.length];
+        reasonIds = new int[SPECIALIZATIONS.length][REASONS.length];
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            conn.setAutoCommit(false);
+            for (int s = 0; s < SPECIALIZATIONS.length; s++) {
+                specIds[s] = findOrInsert(conn,
+                        "SELECT ID_Specjalizacji FROM Specjalizacja WHERE Specjalizacja = ? ORDER BY ID_Specjalizacji LIMIT 1",
+                        "INSERT INTO Specjalizacja (Specjalizacja) VALUES (?) RETURNING ID_Specjalizacji",
+                        SPECIALIZATIONS[s], null);
+                for (int r = 0; r < REASONS.length; r++) {
+                    reasonIds[s][r] = findOrInsert(conn,
+                            "SELECT ID_PowodWizyty FROM PowodWizyty WHERE Powod_wizyty = ? AND ID_Specjalizacji = ? ORDER BY ID_PowodWizyty LIMIT 1",
+                            "INSERT INTO PowodWizyty (Powod_wizyty, ID_Specjalizacji) VALUES (?, ?) RETURNING ID_PowodWizyty",
+                            REASONS[r], specIds[s]);
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    private static int findOrInsert(Connection conn, String select, String insert, String name, Integer specId) throws SQLException {
+        for (String sql : new String[]{select, insert}) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, name);
+                if (specId != null) stmt.setInt(2, specId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) return rs.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("Nie udało się założyć słownika: " + name);
+    }
+
+    private void loadUsers(String hash) throws SQLException {
+        int firstDoctorId = reserveIds("Uzytkownik", "ID_Uzytkownika", (long) doctors + patients);
+        firstPatientId = firstDoctorId + doctors;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            try (CopyWriter out = new CopyWriter(conn, "COPY Uzytkownik (ID_Uzytkownika, Imie, Nazwisko, Login, Haslo, " +
+                    "Numer_telefonu, Email, Rola, Czy_aktywny) FROM STDIN")) {
+                for (int i = 0; i < doctors + patients; i++) {
+                    boolean doctor = i < doctors;
+                    int n = doctor ? i : i - doctors;
+                    boolean female = random.nextBoolean();
+                    String login = prefix + (doctor ? "lekarz." : "pacjent.") + n;
+                    String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+                    if (female && surname.endsWith("ski")) surname = surname.substring(0, surname.length() - 1) + "a";
+                    out.row(firstDoctorId + i,
+                            (female ? FEMALE_NAMES : MALE_NAMES)[random.nextInt(MALE_NAMES.length)],
+                            surname,
+                            login,
+                            hash,
+                            (doctor ? "7" : "5") + String.format("%08d", n),
+                            login + "@example.com",
+                            doctor ? "Lekarz" : "Pacjent",
+                            random.nextInt(100) < 98 ? "t" : "f");
+                }
+                System.out.println(">>> [GENERATOR] Uzytkownik: " + out.finish() + " wierszy");
+            }
+            try (CopyWriter out = new CopyWriter(conn, "COPY Pacjent (ID_Uzytkownika, PESEL, Adres) FROM STDIN")) {
+                for (int n = 0; n < patients; n++) {
+                    out.row(firstPatientId + n, pesel(n, random),
+                            "ul. " + STREETS[random.nextInt(STREETS.length)] + " " + (1 + random.nextInt(120)) +
+                                    ", " + CITIES[random.nextInt(CITIES.length)]);
+                }
+                System.out.println(">>> [GENERATOR] Pacjent: " + out.finish() + " wierszy");
+            }
+            doctorPlan = new ArrayList<>(doctors);
+            try (CopyWriter out = new CopyWriter(conn, "COPY Lekarz (ID_Uzytkownika, Start_pracy, Koniec_pracy, ID_Specjalizacji) FROM STDIN")) {
+                for (int n = 0; n < doctors; n++) {
+                    int specIndex = n % SPECIALIZATIONS.length;
+                    LocalTime start = LocalTime.of(7 + random.nextInt(4), random.nextBoolean() ? 0 : 30);
+                    int slotsPerDay = (6 + random.nextInt(4)) * 60 / SLOT_MINUTES;
+                    out.row(firstDoctorId + n, start, start.plusMinutes((long) slotsPerDay * SLOT_MINUTES), specIds[specIndex]);
+                    doctorPlan.add(new Doctor(n, firstDoctorId + n, specIndex, start, slotsPerDay, 0, 0));
+                }
+                System.out.println(">>> [GENERATOR] Lekarz: " + out.finish() + " wierszy");
+            }
+        }
+    }
+
+    /**
+     * Unikalny PESEL z poprawną cyfrą kontrolną: data urodzenia wynika z numeru pacjenta
+     * (kolejne dni od 1940 r.), a numer serii z kolejnego "przebiegu" po zakresie dat.
+     */
+    private static String pesel(int n, SplittableRandom random) {
+        int days = 365 * 85;
+        LocalDate birth = LocalDate.of(1940, 1, 1).plusDays(n % days);
+        int serial = n / days;
+        int month = birth.getMonthValue() + (birth.getYear() >= 2000 ? 20 : 0);
+        String digits = String.format("%02d%02d%02d%03d%d", birth.getYear() % 100, month, birth.getDayOfMonth(),
+                serial, random.nextInt(10));
+        int[] weights = {1, 3, 7, 9, 1, 3, 7, 9, 1, 3};
+        int sum = 0;
+        for (int i = 0; i < 10; i++) sum += (digits.charAt(i) - '0') * weights[i];
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    // --- terminy i rezerwacje ---
+
+    /** Pierwszy przebieg "na sucho": liczy terminy i rezerwacje każdego lekarza, żeby zarezerwować zakresy ID. */
+    private void planDoctors() throws SQLException {
+        long[] slotCounts = new long[doctors];
+        long[] reservationCounts = new long[doctors];
+        for (Doctor doctor : doctorPlan) {
+            long[] counts = new long[2];
+            simulate(doctor, slot -> {
+                counts[0]++;
+                if (slot.reserved()) counts[1]++;
+            });
+            slotCounts[doctor.index()] = counts[0];
+            reservationCounts[doctor.index()] = counts[1];
+        }
+
+        totalSlots = sum(slotCounts);
+        totalReservations = sum(reservationCounts);
+        long slotId = reserveIds("Termin", "ID_Terminu", totalSlots);
+        long reservationId = reserveIds("Rezerwacja", "ID_Rezerwacji", totalReservations);
+        List<Doctor> planned = new ArrayList<>(doctors);
+        for (Doctor d : doctorPlan) {
+            planned.add(new Doctor(d.index(), d.id(), d.specIndex(), d.start(), d.slotsPerDay(), slotId, reservationId));
+            slotId += slotCounts[d.index()];
+            reservationId += reservationCounts[d.index()];
+        }
+        doctorPlan = planned;
+    }
+
+    /**
+     * Odtwarza grafik lekarza. Przeszłość jest zajęta w ~70% (głównie 'Odbyta'), przyszłość tym
+     * luźniej, im dalej od dziś. Pacjenci są losowani z przewagą "stałych bywalców".
+     */
+    private void simulate(Doctor doctor, SlotSink sink) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (doctor.index() + 1)));
+        LocalDate today = LocalDate.now();
+        long aheadDays = Math.max(1, to.toEpochDay() - today.toEpochDay());
+        long slotId = doctor.firstSlotId();
+        long reservationId = doctor.firstReservationId();
+
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) continue;
+            boolean past = day.isBefore(today);
+            double occupancy = past ? 0.7 : 0.8 - 0.65 * (day.toEpochDay() - today.toEpochDay()) / aheadDays;
+
+            for (int s = 0; s < doctor.slotsPerDay(); s++) {
+                LocalTime time = doctor.start().plusMinutes((long) s * SLOT_MINUTES);
+                if (random.nextDouble() >= occupancy) {
+                    sink.accept(new Slot(slotId++, day, time, 0, 0, null, 0, null));
+                    continue;
+                }
+                double roll = random.nextDouble();
+                String status = past
+                        ? (roll < 0.78 ? "Odbyta" : roll < 0.85 ? "Nieodbyta" : "Anulowana")
+                        : (roll < 0.62 ? "Potwierdzona"
+                        : roll < 0.77 ? "Wymaga potwierdzenia przez rejestracje"
+                        : roll < 0.87 ? "Wymaga potwierdzenia przez pacjenta" : "Anulowana");
+                double skew = random.nextDouble();
+                int patientId = firstPatientId + (int) (patients * skew * skew);
+                int reasonId = reasonIds[doctor.specIndex()][random.nextInt(REASONS.length)];
+                String note = "Odbyta".equals(status) ? NOTES[random.nextInt(NOTES.length)] : null;
+                sink.accept(new Slot(slotId++, day, time, reservationId++, patientId, status, reasonId, note));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowMapper {
+        SlotSink open(Doctor doctor, CopyWriter out);
+    }
+
+    /** Jedno COPY na porcję lekarzy; porcje ładowane równolegle na {@code threads} połączeniach. */
+    private void copyPerDoctor(String copySql, String table, RowMapper mapper) throws Exception {
+        long started = System.nanoTime();
+        int chunk = (doctorPlan.size() + threads - 1) / threads;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            for (int p = 0; p < doctorPlan.size(); p += chunk) {
+                List<Doctor> part = doctorPlan.subList(p, Math.min(doctorPlan.size(), p + chunk));
+                parts.add(executor.submit(() -> {
+                    try (Connection conn = DatabaseConnectionService.getConnection();
+                         CopyWriter out = new CopyWriter(conn, copySql)) {
+                        for (Doctor doctor : part) {
+                            simulate(doctor, mapper.open(doctor, out));
+                        }
+                        return out.finish();
+                    }
+                }));
+            }
+            long rows = 0;
+            for (Future<Long> part : parts) rows += part.get();
+            System.out.println(">>> [GENERATOR] " + table + ": " + rows + " wierszy w " +
+                    (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // --- narzędzia ---
+
+    /** Przesuwa sekwencję kolumny o {@code count} i zwraca pierwszy zarezerwowany identyfikator. */
+    private static int reserveIds(String table, String column, long count) throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT setval(s::regclass, nextval(s::regclass) + ? - 1) - ? + 1 FROM pg_get_serial_sequence(?, ?) AS s")) {
+            stmt.setLong(1, Math.max(1, count));
+            stmt.setLong(2, Math.max(1, count));
+            stmt.setString(3, table.toLowerCase());
+            stmt.setString(4, column.toLowerCase());
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long first = rs.getLong(1);
+                if (first + count > Integer.MAX_VALUE) {
+                    throw new SQLException("Zakres ID tabeli " + table + " przekracza typ integer");
+                }
+                return (int) first;
+            }
+        }
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) total += value;
+        return total;
+    }
+
+    /**
+     * Strumień COPY w formacie tekstowym (tabulator, {@code \N} dla NULL), buforowany i
+     * wysyłany porcjami po {@value #FLUSH_BYTES} bajtów. Niezakończone COPY jest przerywane przy zamknięciu.
+     */
+    private static final class CopyWriter implements AutoCloseable {
+        private final CopyIn copy;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES + 1024);
+        private long rows;
+        private boolean finished;
+
+        CopyWriter(Connection conn, String sql) throws SQLException {
+            this.copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        }
+
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) buffer.append('\t');
+                if (values[i] == null) {
+                    buffer.append("\\N");
+                } else {
+                    escape(values[i].toString());
+                }
+            }
+            buffer.append('\n');
+            rows++;
+            if (buffer.length() >= FLUSH_BYTES) flush();
+        }
+
+        private void escape(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        long finish() throws SQLException {
+            flush();
+            copy.endCopy();
+            finished = true;
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!finished && copy.isActive()) copy.cancelCopy();
+        }
+    }
+}
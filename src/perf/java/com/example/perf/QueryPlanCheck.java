@@ -0,0 +1,349 @@
+package com.example.perf;
+
+import com.example.data.HarmonogramDTO;
+import com.example.data.SpecjalizacjaDTO;
+import com.example.data.UserDTO;
+import com.example.metrics.QueryMetrics;
+import com.example.services.AdminService;
+import com.example.services.AdminStatsService;
+import com.example.services.AuthService;
+import com.example.services.AvailabilityIndex;
+import com.example.services.DatabaseConnectionService;
+import com.example.services.DoctorService;
+import com.example.services.PendingQueue;
+import com.example.services.ReceptionService;
+import com.example.services.ReferenceDataCache;
+import com.example.services.StatsCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regresje planów zapytań: przechodzi przez metody serwisów na danych z {@link DatasetGenerator},
+ * zbiera każdą wykonaną instrukcję SQL razem z parametrami ({@link QueryMetrics#setStatementListener})
+ * i dla każdej robi {@code EXPLAIN} z tymi samymi parametrami. Wynik jest błędny, gdy plan:
+ * <ul>
+ *     <li>czyta sekwencyjnie dużą tabelę ({@link #LARGE_TABLES}) - chyba że jest na liście wyjątków {@link #SEQ_SCAN_ALLOWED},</li>
+ *     <li>przekracza budżet kosztu lub szacowanej liczby wierszy ({@link #BUDGETS}, domyślnie {@link #DEFAULT_BUDGET}).</li>
+ * </ul>
+ * Scenariusze zapisu działają na własnych wierszach (loginy "plan.*", terminy w 2150 r.), ale zostawiają je w bazie.
+ * Uruchomienie: {@code mvn -Pperf compile exec:java -Dexec.mainClass=com.example.perf.QueryPlanCheck [-Dprefix=gen.]}
+ * - kod wyjścia 1 oznacza regresję.
+ */
+public class QueryPlanCheck {
+
+    private static final Set<String> LARGE_TABLES = Set.of("uzytkownik", "pacjent", "termin", "rezerwacja", "wizyta");
+
+    private record Budget(double maxCost, long maxRows) {}
+
+    private static final Budget DEFAULT_BUDGET = new Budget(5_000, 1_000);
+
+    /** Zapytania, które z natury czytają więcej - budżet podniesiony świadomie. */
+    private static final Map<String, Budget> BUDGETS = Map.of(
+            // Lista oczekujących nie jest stronicowana - rośnie z liczbą rezerwacji "do potwierdzenia"
+            "ReceptionService.getPendingReservations", new Budget(50_000, 50_000),
+            // Statystyki z podsumowania dziennego: z podziałem wierszy jest dni × lekarze
+            "AdminStatsService.getDailyStats", new Budget(10_000, 50_000),
+            // Mapa popytu: wszystkie terminy zakresu (wynik w cache); grup najwyżej 7 × 96, planer szacuje więcej
+            "AdminStatsService.getDemandHeatmap", new Budget(100_000, 50_000),
+            // Historia pacjenta i jego rezerwacje: wszystkie wiersze jednej osoby
+            "ReceptionService.getPatientReservations", new Budget(5_000, 5_000),
+            "DoctorService.getPatientHistory", new Budget(5_000, 5_000),
+            // Indeks dostępności w tle: całe 90-dniowe okno (lekarze x dni x sloty). Na domyślnym zbiorze
+            // DatasetGenerator plan ma koszt ~2,7 mln (odczyt po kluczu rezerwacji na każdy termin) i ~86 tys. grup
+            "AvailabilityIndex.load", new Budget(4_000_000, 150_000)
+    );
+
+    /** Duże tabele, które dane zapytanie może czytać w całości - każdy wyjątek z powodem. */
+    private static final Map<String, Set<String>> SEQ_SCAN_ALLOWED = Map.of(
+            // Miesiąc terminów całej przychodni łączony z rezerwacjami - hash join tańszy od odczytów po kluczu.
+            // Termin nadal musi iść po indeksie dat.
+            "AdminStatsService.getDemandHeatmap", Set.of("rezerwacja"),
+            // Lista nie jest stronicowana: tysiące oczekujących łączonych z Termin to hash join,
+            // tańszy od tylu odczytów po kluczu. Rezerwacja nadal musi iść po indeksie częściowym.
+            "ReceptionService.getPendingReservations", Set.of("termin")
+    );
+
+    private static final Pattern COST = Pattern.compile("cost=[\\d.]+\\.\\.([\\d.]+) rows=(\\d+)");
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private record Sample(String queryName, String sql, List<QueryMetrics.Binding> bindings) {}
+
+    private final Map<String, Sample> samples = new LinkedHashMap<>();
+    private final List<String> scenarioErrors = new ArrayList<>();
+
+    private final ReceptionService receptionService = new ReceptionService();
+    private final DoctorService doctorService = new DoctorService();
+    private final AuthService authService = new AuthService();
+    private final AdminService adminService = new AdminService();
+    private final AdminStatsService adminStatsService = new AdminStatsService();
+
+    @FunctionalInterface
+    private interface Scenario {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        QueryPlanCheck check = new QueryPlanCheck();
+        check.collect(System.getProperty("prefix", "gen."));
+        int failures = check.explainAll();
+        System.exit(failures == 0 && check.scenarioErrors.isEmpty() ? 0 : 1);
+    }
+
+    // --- zbieranie instrukcji ---
+
+    private void collect(String prefix) throws Exception {
+        int doctorId = firstId("SELECT ID_Uzytkownika FROM Uzytkownik WHERE Login LIKE ? AND Rola = 'Lekarz' ORDER BY ID_Uzytkownika", prefix + "%");
+        int patientId = firstId("SELECT r.ID_Pacjenta FROM Rezerwacja r JOIN Uzytkownik u ON u.ID_Uzytkownika = r.ID_Pacjenta " +
+                "WHERE u.Login LIKE ? AND r.Status_rezerwacji = 'Odbyta' ORDER BY r.ID_Rezerwacji", prefix + "%");
+        if (doctorId < 0 || patientId < 0) {
+            System.err.println("!!! [PLANY] Brak danych z prefiksem '" + prefix + "' - najpierw uruchom DatasetGenerator");
+            System.exit(1);
+        }
+        String patientLogin = firstString("SELECT Login FROM Uzytkownik WHERE ID_Uzytkownika = ?", patientId);
+        String specialization = receptionService.getDoctorById(doctorId).getSpecjalizacja();
+        LocalDate today = LocalDate.now();
+        LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        QueryMetrics.setStatementListener((queryName, sql, bindings) -> {
+            synchronized (samples) {
+                samples.putIfAbsent(sql, new Sample(queryName, sql, bindings));
+            }
+        });
+        try {
+            // Odczyty
+            run("ReceptionService.getAllDoctors", receptionService::getAllDoctors);
+            run("ReceptionService.getAllSpecializations", receptionService::getAllSpecializations);
+            run("ReceptionService.getDoctorsBySpecialization", () -> receptionService.getDoctorsBySpecialization(specialization));
+            run("ReceptionService.findFirstAvailableSlots", () -> {
+                receptionService.findFirstAvailableSlots(specialization, LocalDateTime.now(), null, null, 10);
+                receptionService.findFirstAvailableSlots(specialization, LocalDateTime.now(), LocalTime.of(9, 0), LocalTime.of(12, 0), 10);
+            });
+            run("ReceptionService.getDoctorById", () -> receptionService.getDoctorById(doctorId));
+            run("ReceptionService.getScheduleForDoctor", () -> {
+                receptionService.getScheduleForDoctor(doctorId, today);
+                receptionService.getScheduleForDoctor(doctorId, monday, monday.plusDays(4));
+            });
+            run("ReceptionService.getPendingReservations", receptionService::getPendingReservations);
+            int pendingTerminId = firstId("SELECT ID_Terminu FROM Rezerwacja WHERE Status_rezerwacji = ? ORDER BY ID_Rezerwacji",
+                    PendingQueue.PENDING_STATUS);
+            run("ReceptionService.getPendingReservation", () -> receptionService.getPendingReservation(Math.max(pendingTerminId, 0)));
+            run("ReceptionService.searchPatients", () -> {
+                receptionService.searchPatients("", 0, 20);
+                receptionService.searchPatients("kowal", 0, 20);
+                receptionService.searchPatients("kowal an", 20, 20);
+                receptionService.searchPatients("8501", 0, 20);
+            });
+            run("ReceptionService.getVisitReasons", () -> receptionService.getVisitReasons(doctorId));
+            run("ReceptionService.getPatientReservations", () -> receptionService.getPatientReservations(patientId));
+            run("DoctorService.getSchedule", () -> doctorService.getSchedule(doctorId, today));
+            run("DoctorService.getPatientHistory", () -> doctorService.getPatientHistory(patientId));
+            run("AuthService.login", () -> authService.login(patientLogin, "zle-haslo"));
+            run("AdminService.getAllSpecializations", adminService::getAllSpecializations);
+            run("AdminService.findUsers", () -> {
+                List<UserDTO> page = adminService.findUsers(null, null, AdminService.UserSort.NAZWISKO, false, null, 0, 50);
+                adminService.findUsers(null, null, AdminService.UserSort.NAZWISKO, false, page.get(page.size() - 1), 0, 50);
+                adminService.findUsers("kow", "Pacjent", AdminService.UserSort.IMIE, true, null, 0, 50);
+                List<UserDTO> byRole = adminService.findUsers(null, null, AdminService.UserSort.ROLA, false, null, 0, 50);
+                adminService.findUsers(null, null, AdminService.UserSort.ROLA, true, byRole.get(byRole.size() - 1), 0, 50);
+                adminService.findUsers(null, "Lekarz", AdminService.UserSort.ROLA, false, null, 100, 50);
+            });
+            run("AvailabilityIndex.load", () -> AvailabilityIndex.reconcile(90));
+            run("AdminStatsService.getDailyStats", () -> {
+                for (AdminStatsService.Breakdown breakdown : AdminStatsService.Breakdown.values()) {
+                    adminStatsService.getDailyStats(today.minusDays(30), today, breakdown);
+                }
+            });
+            int specializationId = firstId("SELECT ID_Specjalizacji FROM Lekarz WHERE ID_Uzytkownika = ?", doctorId);
+            run("AdminStatsService.getDemandHeatmap", () -> {
+                adminStatsService.getDemandHeatmap(today.minusDays(30), today, 0);
+                adminStatsService.getDemandHeatmap(today.minusDays(30), today, Math.max(specializationId, 0));
+            });
+
+            // Zapisy na własnych wierszach
+            String tag = String.valueOf(System.currentTimeMillis() % 1_000_000_000L);
+            String suffix = String.format("%09d", Long.parseLong(tag));
+            run("AuthService.registerUser", () -> authService.registerUser("Plan", "Check", "7" + suffix + "1",
+                    "ul. Testowa 1", "plan.pacjent." + tag, "haslo1234", "49" + suffix, "plan.pacjent." + tag + "@example.com"));
+            int planPatientId = firstId("SELECT ID_Uzytkownika FROM Uzytkownik WHERE Login = ?", "plan.pacjent." + tag);
+            int specId = adminService.getAllSpecializations().stream()
+                    .filter(s -> s.getNazwa().equals(specialization)).mapToInt(SpecjalizacjaDTO::getId).findFirst().orElse(0);
+            run("AdminService.registerDoctor", () -> adminService.registerDoctor("Plan", "Lekarz", "plan.lekarz." + tag,
+                    "haslo1234", "plan.lekarz." + tag + "@example.com", "48" + suffix, LocalTime.of(8, 0), LocalTime.of(12, 0), specId));
+            run("AdminService.registerReceptionist", () -> adminService.registerReceptionist("Plan", "Rejestracja",
+                    "plan.rejestracja." + tag, "haslo1234", "plan.rejestracja." + tag + "@example.com", "47" + suffix));
+            int planDoctorId = firstId("SELECT ID_Uzytkownika FROM Uzytkownik WHERE Login = ?", "plan.lekarz." + tag);
+            run("AdminService.updateDoctorHours", () -> adminService.updateDoctorHours(planDoctorId, LocalTime.of(8, 0), LocalTime.of(16, 0)));
+
+            List<Integer> slots = createSlots(planDoctorId, LocalDate.of(2150, 1, 4), 3);
+            HarmonogramDTO first = slot(slots.get(0), planDoctorId);
+            run("ReceptionService.bookAppointment", () -> {
+                receptionService.bookAppointment(first, planPatientId, null, null, null, null, null, null,
+                        -1, "kontrola planów", "Wymaga potwierdzenia przez rejestracje");
+                receptionService.bookAppointment(slot(slots.get(1), planDoctorId), null, "Plan", "Nowy" + tag, "6" + suffix + "1",
+                        "46" + suffix, "plan.nowy." + tag + "@example.com", "ul. Testowa 2", -1, "kontrola planów", "Potwierdzona");
+            });
+            run("ReceptionService.getAppointmentDetails", () -> receptionService.getAppointmentDetails(first.getIdTerminu()));
+            run("DoctorService.getVisitDetails", () -> doctorService.getVisitDetails(first.getIdTerminu()));
+            run("ReceptionService.updateAppointmentStatus", () -> receptionService.updateAppointmentStatus(first.getIdTerminu(), "Potwierdzona"));
+            run("DoctorService.completeVisit", () -> doctorService.completeVisit(first.getIdTerminu(), "Kontrola planów.", "Odbyta"));
+            run("ReceptionService.rescheduleAppointment", () -> {
+                int reservationId = receptionService.getAppointmentDetails(slots.get(1)).getIdRezerwacji();
+                // Slot tak jak z indeksu dostępności (ID 0) - wiersz odszukuje rezerwacja
+                HarmonogramDTO target = slot(0, planDoctorId);
+                target.setData(LocalDate.of(2150, 1, 4));
+                target.setGodzina(LocalTime.of(8, 30));
+                receptionService.rescheduleAppointment(reservationId, target);
+                receptionService.updateAppointmentStatus(slots.get(2), "Anulowana");
+            });
+            // Termin anulowany i zarezerwowany ponownie - zakończenie wizyty dotyczy tylko aktywnej rezerwacji
+            run("DoctorService.completeVisit", () -> {
+                receptionService.bookAppointment(slot(slots.get(2), planDoctorId), planPatientId, null, null, null, null, null, null,
+                        -1, "kontrola planów", "Potwierdzona");
+                doctorService.completeVisit(slots.get(2), "Po ponownej rezerwacji.", "Odbyta");
+            });
+            run("AdminService.toggleUserStatus", () -> adminService.toggleUserStatus(planPatientId, false));
+        } finally {
+            QueryMetrics.setStatementListener(null);
+        }
+    }
+
+    private void run(String name, Scenario scenario) {
+        // Słowniki i statystyki z cache nie dotykają bazy - każdy scenariusz ma zobaczyć swoje zapytania
+        ReferenceDataCache.invalidateAll();
+        StatsCache.invalidateAll();
+        try {
+            scenario.run();
+        } catch (Exception e) {
+            scenarioErrors.add(name + ": " + e.getMessage());
+            System.err.println("!!! [PLANY] Scenariusz " + name + " nie powiódł się: " + e.getMessage());
+        }
+    }
+
+    // --- EXPLAIN ---
+
+    private int explainAll() throws Exception {
+        List<Sample> sorted = new ArrayList<>(samples.values());
+        sorted.sort((a, b) -> a.queryName().compareTo(b.queryName()));
+        Set<String> names = new TreeSet<>();
+        int failures = 0;
+
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            for (Sample sample : sorted) {
+                names.add(sample.queryName());
+                String plan = explain(conn, sample);
+                List<String> problems = evaluate(sample.queryName(), plan);
+                Matcher top = COST.matcher(plan);
+                String summary = top.find() ? "koszt=" + top.group(1) + " wierszy=" + top.group(2) : "?";
+
+                System.out.printf("%s %-45s %s%n", problems.isEmpty() ? "OK  " : "BŁĄD", sample.queryName(), summary);
+                if (!problems.isEmpty()) {
+                    failures++;
+                    problems.forEach(p -> System.out.println("       - " + p));
+                    System.out.println("       SQL: " + sample.sql().replaceAll("\\s+", " ").trim());
+                    plan.lines().forEach(line -> System.out.println("       | " + line));
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Instrukcji: " + sorted.size() + ", zapytań (nazw): " + names.size() + ", regresji: " + failures +
+                ", nieudanych scenariuszy: " + scenarioErrors.size());
+        return failures;
+    }
+
+    private static String explain(Connection conn, Sample sample) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sample.sql())) {
+            for (QueryMetrics.Binding binding : sample.bindings()) {
+                binding.setter().invoke(stmt, binding.args());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) plan.append(rs.getString(1)).append('\n');
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN nie powiódł się: " + e.getMessage();
+        }
+        return plan.toString();
+    }
+
+    private static List<String> evaluate(String queryName, String plan) {
+        List<String> problems = new ArrayList<>();
+        Matcher top = COST.matcher(plan);
+        if (!top.find()) {
+            problems.add(plan.trim());
+            return problems;
+        }
+
+        Budget budget = BUDGETS.getOrDefault(queryName, DEFAULT_BUDGET);
+        double cost = Double.parseDouble(top.group(1));
+        long rows = Long.parseLong(top.group(2));
+        if (cost > budget.maxCost()) problems.add("koszt " + cost + " > budżet " + budget.maxCost());
+        if (rows > budget.maxRows()) problems.add("szacowane wiersze " + rows + " > budżet " + budget.maxRows());
+
+        Set<String> allowed = SEQ_SCAN_ALLOWED.getOrDefault(queryName, Set.of());
+        Matcher scan = SEQ_SCAN.matcher(plan);
+        while (scan.find()) {
+            String table = scan.group(1);
+            if (LARGE_TABLES.contains(table) && !allowed.contains(table)) {
+                problems.add("pełny odczyt tabeli " + table);
+            }
+        }
+        return problems;
+    }
+
+    // --- dane pomocnicze ---
+
+    private static HarmonogramDTO slot(int terminId, int doctorId) {
+        HarmonogramDTO slot = new HarmonogramDTO();
+        slot.setIdTerminu(terminId);
+        slot.setIdLekarza(doctorId);
+        return slot;
+    }
+
+    private static List<Integer> createSlots(int doctorId, LocalDate date, int count) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                "SELECT ?, ?, TIME '08:00' + g * INTERVAL '15 minutes' FROM generate_series(0, ? - 1) g RETURNING ID_Terminu";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, doctorId);
+            stmt.setObject(2, date);
+            stmt.setInt(3, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static int firstId(String sql, Object param) throws SQLException {
+        String value = firstString(sql + " LIMIT 1", param);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    private static String firstString(String sql, Object param) throws SQLException {
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, param);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.services;
+
+import com.example.data.DailyStatsDTO;
+import com.example.data.HarmonogramDTO;
+import com.example.perf.BenchmarkDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarki JMH gorących ścieżek serwisów na danych z {@link BenchmarkDataset}.
+ * Wymaga lokalnej bazy (DB_URL/DB_USERNAME/DB_PASSWORD) w trybie terminów zapisanych w tabeli.
+ * Uruchomienie: {@code mvn -Pperf compile exec:exec@jmh}, filtr: {@code -Djmh.include=ServiceBenchmark.getSchedule},
+ * wątki: {@code -Djmh.threads=8}. Wynik JSON trafia do target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ServiceBenchmark {
+
+    // Daty daleko w przyszłości - terminy tworzone przez benchmark nie mieszają się z danymi
+    private static final LocalDate BOOKING_DATE = LocalDate.of(2100, 1, 1);
+    private static final LocalDate GENERATOR_DATE = LocalDate.of(2200, 1, 1);
+    private static final int BOOKING_POOL = 100_000;
+
+    @Param("200")
+    public int doctors;
+
+    @Param("20000")
+    public int patients;
+
+    private final ReceptionService receptionService = new ReceptionService();
+    private final AdminStatsService adminStatsService = new AdminStatsService();
+
+    private int[] doctorIds;
+    private int[] patientIds;
+    private int[] bookingSlots;
+    private final AtomicInteger nextBookingSlot = new AtomicInteger();
+    private final AtomicInteger nextGeneratorWeek = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void loadDataset() throws SQLException {
+        BenchmarkDataset.ensure(doctors, patients);
+        doctorIds = BenchmarkDataset.ids(BenchmarkDataset.DOCTOR_LOGIN_PREFIX).stream().mapToInt(Integer::intValue).toArray();
+        patientIds = BenchmarkDataset.ids(BenchmarkDataset.PATIENT_LOGIN_PREFIX).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Setup(Level.Iteration)
+    public void createBookingSlots() throws SQLException {
+        deleteFrom(BOOKING_DATE, GENERATOR_DATE);
+        String sql = "INSERT INTO Termin (ID_Lekarza, Data, Godzina) " +
+                "SELECT ?, CAST(? AS date) + (g / 96), TIME '00:00' + (g % 96) * INTERVAL '15 minutes' " +
+                "FROM generate_series(0, ? - 1) g RETURNING ID_Terminu";
+        try (Connection conn = DatabaseConnectionService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, doctorIds[0]);
+            stmt.setDate(2, Date.valueOf(BOOKING_DATE));
+            stmt.setInt(3, BOOKING_POOL);
+            int[] ids = new int[BOOKING_POOL];
+            int i = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) ids[i++] = rs.getInt(1);
+            }
+            bookingSlots = ids;
+        }
+        nextBookingSlot.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws SQLException {
+        deleteFrom(BOOKING_DATE, null);
+    }
+
+    @Benchmark
+    public List<HarmonogramDTO> getScheduleForDoctor() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int doctorId = doctorIds[random.nextInt(doctorIds.length)];
+        return receptionService.getScheduleForDoctor(doctorId, LocalDate.now().plusDays(random.nextInt(-30, 31)));
+    }
+
+    @Benchmark
+    public Object bookAppointment() throws Exception {
+        int index = nextBookingSlot.getAndIncrement();
+        if (index >= bookingSlots.length) {
+            throw new IllegalStateException("Pula terminów wyczerpana - zwiększ BOOKING_POOL");
+        }
+        HarmonogramDTO slot = new HarmonogramDTO();
+        slot.setIdTerminu(bookingSlots[index]);
+        slot.setIdLekarza(doctorIds[0]);
+        int patientId = patientIds[ThreadLocalRandom.current().nextInt(patientIds.length)];
+        return receptionService.bookAppointment(slot, patientId, null, null, null, null, null, null,
+                -1, "benchmark", "Wymaga potwierdzenia przez rejestracje");
+    }
+
+    @Benchmark
+    public List<HarmonogramDTO> getPendingReservations() throws SQLException {
+        return receptionService.getPendingReservations();
+    }
+
+    /** Stan ustalony zadania horyzontu: wszystkie terminy w zakresie już istnieją. */
+    @Benchmark
+    public int generateSlotsExisting() throws SQLException {
+        int doctorId = doctorIds[ThreadLocalRandom.current().nextInt(doctorIds.length)];
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            return SlotGenerator.generate(conn, doctorId, LocalTime.of(8, 0), LocalTime.of(16, 0),
+                    LocalDate.now().minusDays(60), LocalDate.now().plusDays(60));
+        }
+    }
+
+    /** Nowy lekarz / nowy tydzień: każde wywołanie generuje świeży tydzień terminów. */
+    @Benchmark
+    public int generateSlotsFresh() throws SQLException {
+        LocalDate from = GENERATOR_DATE.plusWeeks(nextGeneratorWeek.getAndIncrement());
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            return SlotGenerator.generate(conn, doctorIds[0], LocalTime.of(8, 0), LocalTime.of(16, 0), from, from.plusWeeks(1));
+        }
+    }
+
+    @Benchmark
+    public List<DailyStatsDTO> getDailyStats() throws SQLException {
+        LocalDate end = LocalDate.now().minusDays(ThreadLocalRandom.current().nextInt(30));
+        return adminStatsService.getDailyStats(end.minusDays(30), end, AdminStatsService.Breakdown.BRAK);
+    }
+
+    private void deleteFrom(LocalDate from, LocalDate to) throws SQLException {
+        String range = to == null ? "Data >= ?" : "Data >= ? AND Data < ?";
+        try (Connection conn = DatabaseConnectionService.getConnection()) {
+            for (String sql : new String[]{
+                    "DELETE FROM Wizyta WHERE ID_Rezerwacji IN (SELECT r.ID_Rezerwacji FROM Rezerwacja r " +
+                            "JOIN Termin t ON t.ID_Terminu = r.ID_Terminu WHERE t." + range + ")",
+                    "DELETE FROM Rezerwacja WHERE ID_Terminu IN (SELECT ID_Terminu FROM Termin WHERE " + range + ")",
+                    "DELETE FROM Termin WHERE " + range}) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setDate(1, Date.valueOf(from));
+                    if (to != null) stmt.setDate(2, Date.valueOf(to));
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+}